@@ -1,6 +1,7 @@
 package expression;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -10,6 +11,10 @@ import java.util.Set;
  * A Sort is a hierarchical type of a logical formula. Sorts can be subsorts and supersorts
  * of other sorts, and each sort has a unique name and supersort. The most general sorts,
  * OBJECT and BOOLEAN, have no supersort.
+ * <p>
+ * Subsort tests compare pre-order intervals of the sort hierarchy. The hierarchy is encoded
+ * on the first test after sorts are added or removed, so a batch of declarations is
+ * encoded only once.
  */
 public class Sort implements Serializable {
   public static final Sort OBJECT = new Sort("Object", null);
@@ -19,9 +24,15 @@ public class Sort implements Serializable {
     this.put(BOOLEAN.getName(), BOOLEAN);
   }};
 
+  //The number of times the hierarchy has been encoded, and whether it has changed since
+  private static int epoch = 0;
+  private static volatile boolean encoded = false;
+
   private String name;
   private Sort superSort;
   private Set<Sort> subSorts;
+  //The pre-order number of this sort, the greatest pre-order number of its subsorts, and when they were numbered
+  private transient int pre, last, encoding;
 
   /**
    * Create a new Sort with the given name
@@ -50,6 +61,7 @@ public class Sort implements Serializable {
     s = new Sort(name, superSort);
     instances.put(name, s);
     superSort.addSubSort(s);
+    encoded = false;
     return s;
   }
 
@@ -70,6 +82,7 @@ public class Sort implements Serializable {
     s = new Sort(name, Sort.OBJECT);
     instances.put(name, s);
     Sort.OBJECT.addSubSort(s);
+    encoded = false;
     return s;
   }
 
@@ -84,9 +97,7 @@ public class Sort implements Serializable {
     if (!isSort(name))
       return false;
 
-    instances.remove(name)
-            .getSubSorts().forEach(Sort::removeSort);
-    return true;
+    return removeSort(instances.get(name));
   }
 
   /**
@@ -98,7 +109,10 @@ public class Sort implements Serializable {
    */
   public static boolean removeSort(Sort s) {
     instances.remove(s.name);
-    s.getSubSorts().forEach(Sort::removeSort);
+    if (s.superSort != null)
+      s.superSort.subSorts.remove(s);
+    new ArrayList<>(s.subSorts).forEach(Sort::removeSort);
+    encoded = false;
     return true;
   }
 
@@ -146,7 +160,46 @@ public class Sort implements Serializable {
    * @return true if s is a supersort of this
    */
   public boolean isSubSort(Sort s) {
-    return this.equals(s) || (superSort != null && (superSort.equals(s) || superSort.isSubSort(s)));
+    if (this == s)
+      return true;
+    if (!encoded)
+      encode();
+    if (encoding == epoch && s.encoding == epoch)
+      return s.pre <= pre && pre <= s.last;
+
+    //One of the sorts has been removed from the hierarchy
+    for (Sort t = superSort; t != null; t = t.superSort)
+      if (t.equals(s))
+        return true;
+    return false;
+  }
+
+  /**
+   * Number every sort in the hierarchy in pre-order, so that the subsorts of a sort
+   * are numbered from its own number to its last number
+   */
+  private static synchronized void encode() {
+    if (encoded)
+      return;
+    ++epoch;
+    int next = 0;
+    for (Sort root : instances.values())
+      if (root.superSort == null)
+        next = root.encode(next);
+    encoded = true;
+  }
+
+  /**
+   * @param next the next pre-order number
+   * @return the next pre-order number after this sort and its subsorts
+   */
+  private int encode(int next) {
+    pre = next++;
+    for (Sort s : subSorts)
+      next = s.encode(next);
+    last = next - 1;
+    encoding = epoch;
+    return next;
   }
 
   /**
@@ -156,10 +209,7 @@ public class Sort implements Serializable {
    * @return true if s is a supersort of this
    */
   public boolean isSubSortExclusive(Sort s) {
-    if (superSort == null)
-      return false;
-
-    return superSort.equals(s) || superSort.isSubSort(s);
+    return superSort != null && superSort.isSubSort(s);
   }
 
   /**
@@ -169,7 +219,7 @@ public class Sort implements Serializable {
    * @return true if s is a subsort of this
    */
   public boolean isSuperSort(Sort s) {
-    return subSorts.contains(s) || subSorts.stream().anyMatch(sub -> sub.isSubSort(s));
+    return s.isSubSort(this);
   }
 
   public int hashCode() {
@@ -180,8 +230,8 @@ public class Sort implements Serializable {
     if (this == o)
       return true;
     if (o != null && o instanceof Sort) {
-      Sort s = (Sort) o;
-      return name.equals(s.getName()) && ((superSort == null && s.getSuperSort() == null) || superSort.equals(s.getSuperSort()));
+      //Names are unique, so a Sort only equals another instance of itself (e.g. a deserialized copy)
+      return name.equals(((Sort) o).getName());
     }
     return false;
   }
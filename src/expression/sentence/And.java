@@ -61,7 +61,7 @@ public class And extends Sentence {
   }
 
   @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     // This And will Decompose, not Branch
     if (truthValue)
       return args.stream().mapToInt(a -> a.expectedBranchCount(true, h)).sum();
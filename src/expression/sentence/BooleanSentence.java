@@ -35,7 +35,7 @@ public class BooleanSentence extends Atom {
   }
 
   @Override
-  public Set<Sentence> getConstants() {
+  protected Set<Sentence> computeConstants() {
     return Collections.emptySet();
   }
 
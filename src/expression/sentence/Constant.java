@@ -58,9 +58,10 @@ public class Constant extends Atom {
         throw new RuntimeException("Cannot create a constant with an existing name");
       return (Constant) c;
     }
-    c = new Constant(name, s);
+    c = Sentence.intern(name, new Constant(name, s));
+    if (!(c instanceof Constant) || !c.getSort().equals(s))
+      throw new RuntimeException("Cannot create a constant with an existing name");
     Function.addDeclaration(name, s, new ArrayList<>());
-    Sentence.instances.put(name, c);
     return (Constant) c;
   }
 
@@ -80,22 +81,19 @@ public class Constant extends Atom {
   }
 
   public static Constant getNewUniqueConstant() {
-    String name = getNextConstantName();
-    Constant c = new Constant(name);
-    Sentence.instances.put(name, c);
-    Function.addDeclaration(name, c.getSort(), new ArrayList<>());
-    return c;
+    return getNewUniqueConstant(Sort.OBJECT);
   }
 
   public static Constant getNewUniqueConstant(Sort s) {
-    String name = getNextConstantName();
-    Constant c = new Constant(name, s);
-    Sentence.instances.put(name, c);
-    Function.addDeclaration(name, c.getSort(), new ArrayList<>());
+    Constant c;
+    do {   // Another thread may claim the same name first
+      c = new Constant(getNextConstantName(), s);
+    } while (Sentence.instances.putIfAbsent(c.getName(), c) != null);
+    Function.addDeclaration(c.getName(), c.getSort(), new ArrayList<>());
     return c;
   }
 
-  private static String getNextConstantName() {
+  static String getNextConstantName() {
     String name = "#" + newConstants;
     while (Sentence.instances.containsKey(name)) { // Increment until a unique constant is found
       ++newConstants;
@@ -105,7 +103,7 @@ public class Constant extends Atom {
   }
 
   @Override
-  public Set<Sentence> getConstants() {
+  protected Set<Sentence> computeConstants() {
     return Collections.singleton(this);
   }
 
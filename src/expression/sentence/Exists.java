@@ -8,6 +8,7 @@ import logicalreasoner.truthassignment.TruthAssignment;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -86,8 +87,12 @@ public class Exists extends Sentence {
   }
 
   @Override
-  public Set<Sentence> getConstants() {
-    return getSentence().getConstants();
+  protected Set<Variable> computeFreeVariables() {
+    if (!getSentence().getFreeVariables().contains(getVariable()))
+      return getSentence().getFreeVariables();
+    Set<Variable> vars = new HashSet<>(getSentence().getFreeVariables());
+    vars.remove(getVariable());
+    return vars.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(vars);
   }
 
   @Override
@@ -99,7 +104,7 @@ public class Exists extends Sentence {
   }
 
   @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     //This will be instantiated at most once
     if (truthValue)
       return getSentence().expectedBranchCount(true, h);
@@ -8,6 +8,7 @@ import logicalreasoner.truthassignment.TruthAssignment;
 import logicalreasoner.truthassignment.TruthValue;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The ForAll Sentence is a quantifier over any number of variables,
@@ -16,6 +17,9 @@ import java.util.*;
 public class ForAll extends Sentence {
   public static String NAME = "forAll", SYMBOL = "∀";
 
+  //The instance of the body for each constant this has been instantiated with
+  private final Map<Sentence, Sentence> groundInstances = new ConcurrentHashMap<>();
+
   public ForAll(Variable v, Sentence s) {
     super(Arrays.asList(v, s), NAME, SYMBOL, Sort.BOOLEAN);
     HASH_CODE = hashString(v).hashCode();
@@ -46,6 +50,17 @@ public class ForAll extends Sentence {
     return (Variable) args.get(0);
   }
 
+  /**
+   * Get the body of this with the bound variable replaced by c. Each instance is
+   * only computed once, and the same (interned) Sentence is returned for every branch.
+   *
+   * @param c the constant to instantiate this with
+   * @return the instance of the body for c
+   */
+  public Sentence getInstance(Sentence c) {
+    return groundInstances.computeIfAbsent(c, k -> getSentence().instantiate(k, getVariable()));
+  }
+
   @Override
   public Boolean eval(TruthAssignment h) {
     return null;
@@ -58,14 +73,7 @@ public class ForAll extends Sentence {
       return null;
 
     if (v.isModelled()) {
-      List<Sentence> a = new ArrayList<>(v.getUninstantiatedConstants());
-      if (a.isEmpty()) {
-        return null;
-      }
-      UniversalInstantiation i = new UniversalInstantiation(h, this, inferenceNum, justificationNum, a, getVariable());
-      v.getInstantiatedConstants().addAll(a);
-      v.getUninstantiatedConstants().clear();
-      return i;
+      return reason(h, inferenceNum, justificationNum, new ArrayList<>(v.getUninstantiatedConstants()));
     } else {
       h.setDecomposed(this);
       Decomposition d = new Decomposition(h, this, inferenceNum, justificationNum);
@@ -75,14 +83,35 @@ public class ForAll extends Sentence {
     }
   }
 
+  /**
+   * Instantiate this true universal in h with some of its uninstantiated constants,
+   * leaving the rest uninstantiated
+   *
+   * @param constants the constants to instantiate this with
+   * @return the UniversalInstantiation, or null if there are no constants to instantiate
+   */
+  public Inference reason(TruthAssignment h, int inferenceNum, int justificationNum, List<Sentence> constants) {
+    TruthValue v = h.getTruthValue(this);
+    if (v == null || constants.isEmpty())
+      return null;
+    UniversalInstantiation i = new UniversalInstantiation(h, this, inferenceNum, justificationNum, constants, getVariable());
+    v.getInstantiatedConstants().addAll(constants);
+    v.getUninstantiatedConstants().removeAll(constants);
+    return i;
+  }
+
   @Override
   public boolean isQuantifier() {
     return true;
   }
 
   @Override
-  public Set<Sentence> getConstants() {
-    return getSentence().getConstants();
+  protected Set<Variable> computeFreeVariables() {
+    if (!getSentence().getFreeVariables().contains(getVariable()))
+      return getSentence().getFreeVariables();
+    Set<Variable> vars = new HashSet<>(getSentence().getFreeVariables());
+    vars.remove(getVariable());
+    return vars.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(vars);
   }
 
   @Override
@@ -93,7 +122,7 @@ public class ForAll extends Sentence {
   }
 
   @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     // This will be instantiated many times, leaving many opportunities for branching
     if (truthValue)
       return getSentence().expectedBranchCount(true, h) * Math.max(1, h.getConstants(getVariable().getSort()).size());
@@ -5,6 +5,7 @@ import logicalreasoner.inference.Inference;
 import logicalreasoner.truthassignment.TruthAssignment;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The function class represents some uninterpreted operation
@@ -16,7 +17,7 @@ import java.util.*;
  */
 public class Function extends Sentence {
 
-  static Map<String, List<Sort>> functionDeclarations = new HashMap<>();
+  static Map<String, List<Sort>> functionDeclarations = new ConcurrentHashMap<>();
 
   /**
    * Create a declaration for a function named s, taking arguments of argTypes and returning a returnType
@@ -78,6 +79,15 @@ public class Function extends Sentence {
     return new ArrayList<>(l);
   }
 
+  /**
+   * Create a term applying the function named n, which is a SkolemFunction if n was declared as one
+   */
+  static Function makeFunction(String n, Sort sort, List<Sentence> sentences) {
+    if (SkolemFunction.isSkolemFunction(n))
+      return new SkolemFunction(n, sort, sentences);
+    return new Function(n, sort, sentences);
+  }
+
   public Function(String n, Sort sort, Sentence... sentences) {
     super(new ArrayList<>(Arrays.asList(sentences)), n, n, sort);
   }
@@ -99,12 +109,7 @@ public class Function extends Sentence {
   }
 
   @Override
-  public int expectedBranchCount(TruthAssignment h) {
-    return 0;
-  }
-
-  @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     return 0;
   }
 
@@ -22,7 +22,7 @@ public class Identity extends Sentence {
 
   @Override
   public Boolean eval(TruthAssignment h) {
-    return null;
+    return args.get(0) == args.get(1) ? Boolean.TRUE : null;
   }
 
   @Override
@@ -40,7 +40,7 @@ public class Identity extends Sentence {
   }
 
   @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     return 0;
   }
 }
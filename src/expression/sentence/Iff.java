@@ -56,7 +56,7 @@ public class Iff extends Sentence {
   }
 
   @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     // Not matter what, Iff results in two branches, with a total of 4 contingent statements
     return 2 + args.get(0).expectedBranchCount(true, h) + args.get(0).expectedBranchCount(false, h)
             + args.get(1).expectedBranchCount(true, h) + args.get(1).expectedBranchCount(false, h);
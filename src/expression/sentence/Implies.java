@@ -52,7 +52,7 @@ public class Implies extends Sentence {
   }
 
   @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     // This Implies will branch
     if (truthValue)
       return 2 + args.get(0).expectedBranchCount(false, h) + args.get(1).expectedBranchCount(true, h);
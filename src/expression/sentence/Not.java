@@ -6,7 +6,6 @@ import logicalreasoner.inference.Inference;
 import logicalreasoner.truthassignment.TruthAssignment;
 
 import java.util.Arrays;
-import java.util.Set;
 
 /**
  * The Not class represents a logical negation
@@ -48,12 +47,7 @@ public class Not extends Sentence {
   }
 
   @Override
-  public Set<Sentence> getConstants() {
-    return args.get(0).getConstants();
-  }
-
-  @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     return args.get(0).expectedBranchCount(!truthValue, h);
   }
 }
@@ -26,7 +26,7 @@ public class Or extends Sentence {
       return null;
 
     //Create a new mapping in h for this with newly computed value
-    return args.stream().map(arg -> arg.eval(h)).distinct().reduce(true, (a, b) -> {
+    return args.stream().map(arg -> arg.eval(h)).distinct().reduce(false, (a, b) -> {
       if (a == null || b == null)
         return null;
       return a || b;
@@ -57,7 +57,7 @@ public class Or extends Sentence {
   }
 
   @Override
-  protected int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+  protected int computeExpectedBranchCount(boolean truthValue, TruthAssignment h) {
     // This Implies will branch
     if (truthValue)
       return args.size() + args.stream().mapToInt(a -> a.expectedBranchCount(true, h)).sum();
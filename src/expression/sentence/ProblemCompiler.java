@@ -0,0 +1,330 @@
+package expression.sentence;
+
+import expression.Sort;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The ProblemCompiler reads and writes parsed problems (declarations,
+ * premises and goal) in a compact binary format, so that large axiom sets
+ * can be loaded without re-parsing their S-Expressions.
+ * <p>
+ * A compiled problem consists of, in order:
+ * <p>
+ * a header (magic number and format version)
+ * a string table of all names
+ * the Sort hierarchy, with every Sort following its supersort
+ * all Function declarations
+ * a DAG of Sentences, where arguments are integer references to earlier nodes
+ * the node references of every premise and of the goal
+ * <p>
+ * Loading a compiled problem rebuilds the interned Sentence graph directly,
+ * through the same instance table used by the SentenceReader.
+ */
+public class ProblemCompiler {
+  private static final int MAGIC = 0x53505242,  // "SPRB"
+          VERSION = 1;
+
+  private static final byte CONSTANT = 0, PROPOSITION = 1, VARIABLE = 2, TRUE = 3, FALSE = 4,
+          TERM = 5, PREDICATE = 6, COMPOUND = 7;
+
+  private List<String> strings;
+  private Map<String, Integer> stringIndex;
+  private List<Sort> sorts;
+  private Map<Sort, Integer> sortIndex;
+  private List<Sentence> nodes;
+  private Map<Sentence, Integer> nodeIndex;
+
+  private ProblemCompiler() {
+    strings = new ArrayList<>();
+    stringIndex = new HashMap<>();
+    sorts = new ArrayList<>();
+    sortIndex = new HashMap<>();
+    nodes = new ArrayList<>();
+    nodeIndex = new IdentityHashMap<>();
+  }
+
+  /**
+   * Check whether a file contains a compiled problem
+   *
+   * @param file the file to check
+   * @return true if file begins with the header of a compiled problem, false otherwise
+   */
+  public static boolean isCompiled(File file) {
+    if (file.length() < 8)
+      return false;
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readInt() == MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Write the current declarations, along with the given premises
+   * and goal, to a compiled problem file
+   *
+   * @param file     the file to write to
+   * @param premises the premises of the problem
+   * @param goal     the goal of the problem (possibly null)
+   * @throws IOException if the file cannot be written
+   */
+  public static void compile(File file, Set<Sentence> premises, Sentence goal) throws IOException {
+    new ProblemCompiler().write(file, premises, goal);
+  }
+
+  /**
+   * Load a compiled problem, adding its declarations to the current
+   * declarations and its premises to the set of premises
+   *
+   * @param file     the compiled problem file to read
+   * @param premises the set in which to store the premises of the problem
+   * @return the goal of the problem, or null if it has none
+   * @throws IOException if the file cannot be read
+   */
+  public static Sentence load(File file, Set<Sentence> premises) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new ProblemCompiler().read(buffer, premises);
+    }
+  }
+
+  private void write(File file, Set<Sentence> premises, Sentence goal) throws IOException {
+    // Sorts are ordered by depth so that every supersort is declared first
+    addSort(Sort.OBJECT);
+    addSort(Sort.BOOLEAN);
+    Sort.instances.values().stream()
+            .filter(s -> s != Sort.OBJECT && s != Sort.BOOLEAN)
+            .sorted(Comparator.comparingInt(ProblemCompiler::depth).thenComparing(Sort::getName))
+            .forEach(this::addSort);
+
+    List<String> declarations = Function.functionDeclarations.keySet().stream().sorted().collect(Collectors.toList());
+    declarations.forEach(this::addString);
+
+    // Declared constants are part of the domain, whether or not they are used
+    Sentence.instances.values().stream()
+            .filter(s -> s instanceof Constant)
+            .sorted(Comparator.comparing(Sentence::getName))
+            .forEach(this::addNode);
+    List<Sentence> premiseList = new ArrayList<>(premises);
+    premiseList.forEach(this::addNode);
+    if (goal != null)
+      addNode(goal);
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+
+      out.writeInt(strings.size());
+      for (String s : strings) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+
+      out.writeInt(sorts.size() - 2);
+      for (Sort s : sorts.subList(2, sorts.size())) {
+        out.writeInt(stringIndex.get(s.getName()));
+        out.writeInt(sortIndex.get(s.getSuperSort()));
+      }
+
+      out.writeInt(declarations.size());
+      for (String name : declarations) {
+        List<Sort> l = Function.functionDeclarations.get(name);
+        out.writeInt(stringIndex.get(name));
+        out.writeInt(l.size());
+        for (Sort s : l)
+          out.writeInt(sortIndex.get(s));
+      }
+
+      out.writeInt(nodes.size());
+      for (Sentence s : nodes)
+        writeNode(out, s);
+
+      out.writeInt(premiseList.size());
+      for (Sentence s : premiseList)
+        out.writeInt(nodeIndex.get(s));
+      out.writeInt(goal == null ? -1 : nodeIndex.get(goal));
+    }
+  }
+
+  private static int depth(Sort s) {
+    int d = 0;
+    for (Sort sup = s.getSuperSort(); sup != null; sup = sup.getSuperSort())
+      ++d;
+    return d;
+  }
+
+  private int addString(String s) {
+    Integer i = stringIndex.get(s);
+    if (i != null)
+      return i;
+    stringIndex.put(s, strings.size());
+    strings.add(s);
+    return strings.size() - 1;
+  }
+
+  private int addSort(Sort s) {
+    Integer i = sortIndex.get(s);
+    if (i != null)
+      return i;
+    if (s.getSuperSort() != null)
+      addSort(s.getSuperSort());
+    addString(s.getName());
+    sortIndex.put(s, sorts.size());
+    sorts.add(s);
+    return sorts.size() - 1;
+  }
+
+  /**
+   * Add s and all of its arguments to the node table, so that
+   * every argument is stored before the Sentence which uses it
+   */
+  private int addNode(Sentence s) {
+    Integer i = nodeIndex.get(s);
+    if (i != null)
+      return i;
+    s.args.forEach(this::addNode);
+    addString(s.getName());
+    addSort(s.getSort());
+    nodeIndex.put(s, nodes.size());
+    nodes.add(s);
+    return nodes.size() - 1;
+  }
+
+  private void writeNode(DataOutputStream out, Sentence s) throws IOException {
+    if (s == BooleanSentence.TRUE) {
+      out.writeByte(TRUE);
+      return;
+    } else if (s == BooleanSentence.FALSE) {
+      out.writeByte(FALSE);
+      return;
+    } else if (s instanceof Proposition) {
+      out.writeByte(PROPOSITION);
+      out.writeInt(stringIndex.get(s.getName()));
+      return;
+    } else if (s instanceof Constant || s instanceof Variable) {
+      out.writeByte(s instanceof Constant ? CONSTANT : VARIABLE);
+      out.writeInt(stringIndex.get(s.getName()));
+      out.writeInt(sortIndex.get(s.getSort()));
+      return;
+    } else if (s instanceof Predicate)
+      out.writeByte(PREDICATE);
+    else if (s instanceof Function)
+      out.writeByte(TERM);
+    else if (AbstractSentenceReader.OPERATORS.contains(s.getName()) || AbstractSentenceReader.QUANTIFIERS.contains(s.getName()))
+      out.writeByte(COMPOUND);
+    else
+      throw new IOException("Cannot compile Sentence " + s.toSExpression() + " of type " + s.getClass().getSimpleName());
+
+    out.writeInt(stringIndex.get(s.getName()));
+    out.writeInt(s.numArgs());
+    for (Sentence arg : s.args)
+      out.writeInt(nodeIndex.get(arg));
+  }
+
+  private Sentence read(ByteBuffer in, Set<Sentence> premises) throws IOException {
+    if (in.remaining() < 8 || in.getInt() != MAGIC)
+      throw new IOException("Not a compiled problem file.");
+    int version = in.getInt();
+    if (version != VERSION)
+      throw new IOException("Unsupported compiled problem version: " + version);
+
+    int n = in.getInt();
+    for (int i = 0; i < n; ++i) {
+      byte[] bytes = new byte[in.getInt()];
+      in.get(bytes);
+      strings.add(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    sorts.add(Sort.OBJECT);
+    sorts.add(Sort.BOOLEAN);
+    n = in.getInt();
+    for (int i = 0; i < n; ++i) {
+      String name = strings.get(in.getInt());
+      sorts.add(Sort.getSort(name, sorts.get(in.getInt())));
+    }
+
+    n = in.getInt();
+    for (int i = 0; i < n; ++i) {
+      String name = strings.get(in.getInt());
+      int arity = in.getInt() - 1;
+      Sort returnType = sorts.get(in.getInt());
+      ArrayList<Sort> argTypes = new ArrayList<>();
+      for (int j = 0; j < arity; ++j)
+        argTypes.add(sorts.get(in.getInt()));
+      Function.addDeclaration(name, returnType, argTypes);
+    }
+
+    SentenceReader reader = new SentenceReader();
+    n = in.getInt();
+    for (int i = 0; i < n; ++i)
+      nodes.add(readNode(in, reader));
+
+    n = in.getInt();
+    for (int i = 0; i < n; ++i)
+      premises.add(nodes.get(in.getInt()));
+    int goal = in.getInt();
+    return goal < 0 ? null : nodes.get(goal);
+  }
+
+  /**
+   * Rebuild a single node, following the same interning conventions
+   * as the SentenceReader so that parsed and loaded Sentences are identical
+   */
+  private Sentence readNode(ByteBuffer in, SentenceReader reader) throws IOException {
+    byte kind = in.get();
+    switch (kind) {
+      case TRUE:
+        return BooleanSentence.TRUE;
+      case FALSE:
+        return BooleanSentence.FALSE;
+      case PROPOSITION: {
+        String name = strings.get(in.getInt());
+        Sentence.instances.putIfAbsent(name, new Proposition(name));
+        return Sentence.instances.get(name);
+      }
+      case CONSTANT:
+        return Constant.getConstant(strings.get(in.getInt()), sorts.get(in.getInt()));
+      case VARIABLE:
+        return new Variable(strings.get(in.getInt()), sorts.get(in.getInt()));
+    }
+
+    String name = strings.get(in.getInt());
+    List<Sentence> args = new ArrayList<>();
+    int arity = in.getInt();
+    for (int i = 0; i < arity; ++i)
+      args.add(nodes.get(in.getInt()));
+
+    switch (kind) {
+      case PREDICATE: {
+        String key = AbstractSentenceReader.fullSentenceString(name, args);
+        Sentence.instances.putIfAbsent(key, new Predicate(name, args));
+        return Sentence.instances.get(key);
+      }
+      case TERM: {
+        String key = AbstractSentenceReader.sentenceString(name, args);
+        Sentence s = Sentence.instances.get(key);
+        if (s != null)
+          return s;
+        List<Sort> l = Function.getDeclaration(name);
+        if (l == null)
+          throw new IOException("Function " + name + " has not been declared.");
+        s = new Function(name, l.get(0), args);
+        Sentence.instances.put(s.toSExpression(), s);
+        return s;
+      }
+      case COMPOUND:
+        return reader.makeSentence(name, args);
+      default:
+        throw new IOException("Invalid node type in compiled problem: " + kind);
+    }
+  }
+}
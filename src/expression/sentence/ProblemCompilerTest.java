@@ -0,0 +1,55 @@
+package expression.sentence;
+
+import expression.Sort;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class tests that compiled problems load into the same
+ * Sentences and declarations as the problems they were compiled from.
+ */
+public class ProblemCompilerTest {
+
+  @Test
+  public void roundTripTest() throws IOException {
+    DeclarationParser.parseDeclaration("declare-sort Man Object");
+    DeclarationParser.parseDeclaration("Man Socrates");
+    DeclarationParser.parseDeclaration("Boolean P");
+    DeclarationParser.parseDeclaration("Object f Object");
+    DeclarationParser.parseDeclaration("Boolean Mortal Object");
+    DeclarationParser.parseDeclaration("Boolean R Object Object");
+
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentence("(forAll (Man x) (Mortal x))"));
+    premises.add(Sentence.makeSentence("(forAll y (implies (R y (f y)) P))"));
+    premises.add(Sentence.makeSentence("(R Socrates (f Socrates))"));
+    Sentence goal = Sentence.makeSentence("(and P (not (Mortal Socrates)))");
+    Set<String> expected = new HashSet<>();
+    premises.forEach(p -> expected.add(p.toSExpression()));
+
+    File file = File.createTempFile("problem", ".bin");
+    file.deleteOnExit();
+    ProblemCompiler.compile(file, premises, goal);
+    Assert.assertTrue("Compiled file was not recognized", ProblemCompiler.isCompiled(file));
+
+    Sentence.clearDeclarations();
+    Sort.removeSort("Man");
+
+    Set<Sentence> loaded = new HashSet<>();
+    Sentence loadedGoal = ProblemCompiler.load(file, loaded);
+    Assert.assertEquals(goal.toSExpression(), loadedGoal.toSExpression());
+    Assert.assertEquals(expected.size(), loaded.size());
+    loaded.forEach(p -> Assert.assertTrue("Unexpected premise " + p, expected.contains(p.toSExpression())));
+
+    Assert.assertTrue("Sort hierarchy was not restored", Sort.getSort("Man").isSubSort(Sort.OBJECT));
+    Assert.assertTrue("Loaded Sentences were not interned",
+            loaded.contains(Sentence.makeSentence("(R Socrates (f Socrates))")));
+    Sentence.clearDeclarations();
+    Sort.removeSort("Man");
+  }
+}
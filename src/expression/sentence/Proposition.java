@@ -2,6 +2,7 @@ package expression.sentence;
 
 import expression.Sort;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Set;
 
@@ -20,6 +21,21 @@ public class Proposition extends Constant {
     super(n, Sort.BOOLEAN);
   }
 
+  /**
+   * Create a new Proposition with a name that is not in use,
+   * for naming subformulas which were not given as input
+   *
+   * @return the newly declared Proposition
+   */
+  public static Proposition getNewUniqueProposition() {
+    Proposition p;
+    do {
+      p = new Proposition(getNextConstantName());
+    } while (Sentence.instances.putIfAbsent(p.getName(), p) != null);
+    Function.addDeclaration(p.getName(), Sort.BOOLEAN, new ArrayList<>());
+    return p;
+  }
+
   @Override
   public String toSExpression() {
     return name;
@@ -31,7 +47,7 @@ public class Proposition extends Constant {
   }
 
   @Override
-  public Set<Sentence> getConstants() {
+  protected Set<Sentence> computeConstants() {
     return Collections.emptySet();
   }
 
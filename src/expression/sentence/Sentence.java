@@ -6,6 +6,7 @@ import logicalreasoner.inference.Inference;
 import logicalreasoner.truthassignment.TruthAssignment;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -15,11 +16,17 @@ import java.util.stream.Stream;
  * Sentence, (ie. BooleanSentence, Proposition, Predicate, or generated by connectives)
  */
 public abstract class Sentence extends Expression {
-  static HashMap<String, Sentence> instances = new HashMap<>();
+  static Map<String, Sentence> instances = new ConcurrentHashMap<>();
   protected List<Sentence> args;
   String FULL_SEXPR = null;
   Sort sort;
-  protected Integer SIZE = null, QUANTIFIER_COUNT = null, ATOM_COUNT = null, EXPECTED_BRANCH_COUNT;
+  protected int SIZE, DEPTH, QUANTIFIER_COUNT, ATOM_COUNT;
+  protected boolean PROPOSITIONAL;
+  protected Set<Sentence> CONSTANTS;
+  protected Set<Variable> FREE_VARIABLES;
+  protected List<Sort> QUANTIFIED_SORTS;
+  private final int[] BRANCH_COUNT = {-1, -1};
+  private Map<List<Integer>, Integer> quantifiedBranchCounts;
 
   public static Set<Sentence> getAllConstants() {
     return instances.values()
@@ -42,6 +49,110 @@ public abstract class Sentence extends Expression {
       throw new RuntimeException();
     sort = type;
     HASH_CODE = toSExpression().hashCode();
+
+    // Structural properties never change once a Sentence is created, so compute them
+    // here from the (already constructed) arguments rather than recursing on every call
+    SIZE = args.size();
+    QUANTIFIER_COUNT = isQuantifier() ? 1 : 0;
+    ATOM_COUNT = isAtomic() ? 1 : 0;
+    PROPOSITIONAL = !isQuantifier();
+    for (Sentence arg : args) {
+      SIZE += arg.SIZE;
+      DEPTH = Math.max(DEPTH, arg.DEPTH + 1);
+      QUANTIFIER_COUNT += arg.QUANTIFIER_COUNT;
+      ATOM_COUNT += arg.ATOM_COUNT;
+      PROPOSITIONAL &= arg.PROPOSITIONAL;
+    }
+    CONSTANTS = computeConstants();
+    FREE_VARIABLES = computeFreeVariables();
+    QUANTIFIED_SORTS = computeQuantifiedSorts();
+  }
+
+  /**
+   * Compute the constants of this Sentence at construction time.
+   * By default, these are the constants of all arguments.
+   *
+   * @return an immutable Set of the constants in this Sentence
+   */
+  protected Set<Sentence> computeConstants() {
+    Set<Sentence> constants = Collections.emptySet();
+    boolean copied = false;
+    for (Sentence arg : args) {
+      if (arg.CONSTANTS.isEmpty() || constants.containsAll(arg.CONSTANTS))
+        continue;
+      if (constants.isEmpty()) {    // share the Set of the argument when possible
+        constants = arg.CONSTANTS;
+        continue;
+      }
+      if (!copied) {
+        constants = new HashSet<>(constants);
+        copied = true;
+      }
+      constants.addAll(arg.CONSTANTS);
+    }
+    return copied ? Collections.unmodifiableSet(constants) : constants;
+  }
+
+  /**
+   * Compute the Sorts of all variables quantified over in this Sentence, which
+   * determine the domains that its expected branch count depends on.
+   *
+   * @return an immutable List of distinct Sorts
+   */
+  private List<Sort> computeQuantifiedSorts() {
+    List<Sort> sorts = Collections.emptyList();
+    for (Sentence arg : args) {
+      if (arg.QUANTIFIED_SORTS.isEmpty() || sorts.containsAll(arg.QUANTIFIED_SORTS))
+        continue;
+      if (sorts.isEmpty())
+        sorts = arg.QUANTIFIED_SORTS;
+      else {
+        List<Sort> l = new ArrayList<>(sorts);
+        arg.QUANTIFIED_SORTS.stream().filter(s -> !l.contains(s)).forEach(l::add);
+        sorts = Collections.unmodifiableList(l);
+      }
+    }
+    if (isQuantifier() && !sorts.contains(args.get(0).getSort())) {
+      List<Sort> l = new ArrayList<>(sorts);
+      l.add(args.get(0).getSort());
+      sorts = Collections.unmodifiableList(l);
+    }
+    return sorts;
+  }
+
+  /**
+   * Compute the free variables of this Sentence at construction time.
+   * By default, these are the free variables of all arguments.
+   *
+   * @return an immutable Set of the unbound Variables in this Sentence
+   */
+  protected Set<Variable> computeFreeVariables() {
+    Set<Variable> vars = Collections.emptySet();
+    boolean copied = false;
+    for (Sentence arg : args) {
+      if (arg.FREE_VARIABLES.isEmpty() || vars.containsAll(arg.FREE_VARIABLES))
+        continue;
+      if (vars.isEmpty()) {
+        vars = arg.FREE_VARIABLES;
+        continue;
+      }
+      if (!copied) {
+        vars = new HashSet<>(vars);
+        copied = true;
+      }
+      vars.addAll(arg.FREE_VARIABLES);
+    }
+    return copied ? Collections.unmodifiableSet(vars) : vars;
+  }
+
+  /**
+   * Record s as the instance of key, unless another thread has already recorded one
+   *
+   * @return the Sentence recorded for key
+   */
+  static Sentence intern(String key, Sentence s) {
+    Sentence existing = instances.putIfAbsent(key, s);
+    return existing == null ? s : existing;
   }
 
   public static void clearDeclarations() {
@@ -64,9 +175,7 @@ public abstract class Sentence extends Expression {
   public static Sentence makeSentence(String sExpr) {
     if (instances.containsKey(sExpr))
       return instances.get(sExpr);
-    Sentence s = new SentenceReader().parse(sExpr);
-    instances.put(sExpr, s);
-    return s;
+    return intern(sExpr, new SentenceReader().parse(sExpr));
   }
 
   /**
@@ -81,8 +190,7 @@ public abstract class Sentence extends Expression {
     if (instances.containsKey(s))
       return instances.get(s);
     Sentence sentence = new SentenceReader().makeSentence(name, args);
-    instances.put(sentence.toFullSExpression(), sentence);
-    return sentence;
+    return intern(sentence.toFullSExpression(), sentence);
   }
 
   public static Sentence makeSentence(String name, Variable var, Sentence s) {
@@ -100,8 +208,7 @@ public abstract class Sentence extends Expression {
     if (instances.containsKey(sExpr))
       return instances.get(sExpr);
     Sentence s = new StrictSentenceReader().parse(sExpr);
-    instances.put(s.toFullSExpression(), s);
-    return s;
+    return intern(s.toFullSExpression(), s);
   }
 
   /**
@@ -229,11 +336,18 @@ public abstract class Sentence extends Expression {
   }
 
   public int size() {
-    if (SIZE == null)
-      SIZE = args.stream().mapToInt(Sentence::size).sum() + numArgs();
     return SIZE;
   }
 
+  /**
+   * Get the depth of this Sentence, where atoms have depth 0
+   *
+   * @return the length of the longest path from this Sentence to an atom
+   */
+  public int depth() {
+    return DEPTH;
+  }
+
   public Sort getSort() {
     return sort;
   }
@@ -249,13 +363,25 @@ public abstract class Sentence extends Expression {
    * @return true if this Sentence is propositional, false otherwise
    */
   public boolean isPropositional() {
-    return !isQuantifier() && args.stream().allMatch(Sentence::isPropositional);
+    return PROPOSITIONAL;
   }
 
+  /**
+   * Get the constants occurring in this Sentence
+   *
+   * @return an immutable Set of constants, shared with the subsentences of this
+   */
   public Set<Sentence> getConstants() {
-    return args.stream()
-            .flatMap(s -> s.getConstants().stream())
-            .collect(Collectors.toSet());
+    return CONSTANTS;
+  }
+
+  /**
+   * Get the Variables which occur unbound in this Sentence
+   *
+   * @return an immutable Set of free Variables, shared with the subsentences of this
+   */
+  public Set<Variable> getFreeVariables() {
+    return FREE_VARIABLES;
   }
 
   public Sentence instantiate(Sentence c, Variable v) {
@@ -263,16 +389,10 @@ public abstract class Sentence extends Expression {
   }
 
   public int quantifierCount() {
-    if (QUANTIFIER_COUNT == null)
-      QUANTIFIER_COUNT = args.stream().mapToInt(Sentence::quantifierCount)
-              .reduce(isQuantifier() ? 1 : 0, (a, b) -> a + b);
     return QUANTIFIER_COUNT;
   }
 
   public int atomCount() {
-    if (ATOM_COUNT == null)
-      ATOM_COUNT = args.stream().mapToInt(Sentence::atomCount)
-              .reduce(isAtomic() ? 1 : 0, (a, b) -> a + b);
     return ATOM_COUNT;
   }
 
@@ -282,13 +402,58 @@ public abstract class Sentence extends Expression {
     return Stream.concat(Stream.of(this), args.stream().flatMap(Sentence::getSubSentences));
   }
 
+  /**
+   * Estimate the number of branches which decomposing this Sentence will create,
+   * using its assigned value in h (or true, if h has no mapping for it)
+   *
+   * @param h the TruthAssignment this Sentence is decomposed in
+   * @return the expected number of branches
+   */
   public int expectedBranchCount(TruthAssignment h) {
-    if (EXPECTED_BRANCH_COUNT == null)
-      EXPECTED_BRANCH_COUNT = expectedBranchCount(h.models(this), h);
-    return EXPECTED_BRANCH_COUNT;
+    Boolean b = h.models(this);
+    return expectedBranchCount(b == null || b, h);
+  }
+
+  /**
+   * Estimate the number of branches which decomposing this Sentence with the given
+   * truth value will create. Values are cached per polarity, and for quantified
+   * Sentences, per size of the domains of each quantified Sort in h.
+   *
+   * @param truthValue the value this Sentence is assigned
+   * @param h          the TruthAssignment this Sentence is decomposed in
+   * @return the expected number of branches
+   */
+  public int expectedBranchCount(boolean truthValue, TruthAssignment h) {
+    int polarity = truthValue ? 1 : 0;
+    if (QUANTIFIED_SORTS.isEmpty()) {   // Independent of h, so compute at most once per polarity
+      if (BRANCH_COUNT[polarity] < 0)
+        BRANCH_COUNT[polarity] = computeExpectedBranchCount(truthValue, h);
+      return BRANCH_COUNT[polarity];
+    }
+
+    List<Integer> key = new ArrayList<>(QUANTIFIED_SORTS.size() + 1);
+    key.add(polarity);
+    QUANTIFIED_SORTS.forEach(s -> key.add(h.getConstants(s).size()));
+    if (quantifiedBranchCounts == null)
+      quantifiedBranchCounts = new ConcurrentHashMap<>();
+    Integer count = quantifiedBranchCounts.get(key);
+    if (count == null) {
+      count = computeExpectedBranchCount(truthValue, h);
+      quantifiedBranchCounts.put(key, count);
+    }
+    return count;
   }
 
-  protected abstract int expectedBranchCount(boolean truthValue, TruthAssignment h);
+  /**
+   * Compute the expected number of branches for expectedBranchCount.
+   * Implementations should only depend on h through the sizes of the domains
+   * of the quantified Sorts in this Sentence.
+   *
+   * @param truthValue the value this Sentence is assigned
+   * @param h          the TruthAssignment this Sentence is decomposed in
+   * @return the expected number of branches
+   */
+  protected abstract int computeExpectedBranchCount(boolean truthValue, TruthAssignment h);
 
   public static Comparator<Sentence> quantifierComparator = (e1, e2) -> {
     if (e1 instanceof Exists) {   // Always instantiate existential quantifiers before universals
@@ -54,9 +54,7 @@ public class SentenceReader extends AbstractSentenceReader {
     if (c.getSort() != Sort.BOOLEAN)
       throw new SentenceParseException("Cannot create a proposition named " + exprName + ": a conflicting declaration exists.");
 
-    Proposition p = new Proposition(exprName);
-    Sentence.instances.putIfAbsent(exprName, p);
-    return p;
+    return Sentence.intern(exprName, new Proposition(exprName));
   }
 
   protected Sentence parseQuantifier(String exprName, LinkedList<String> stack, Map<String, Variable> quantifiedVars) {
@@ -148,8 +146,7 @@ public class SentenceReader extends AbstractSentenceReader {
 
 
     Predicate p = new Predicate(exprName, list);
-    Sentence.instances.put(p.toFullSExpression(), p);
-    return p;
+    return Sentence.intern(p.toFullSExpression(), p);
   }
 
   protected Sentence parseFunction(String exprName, LinkedList<String> stack, Map<String, Variable> quantifiedVars) {
@@ -177,9 +174,8 @@ public class SentenceReader extends AbstractSentenceReader {
         throw new SentenceParseException("Argument: " + list.get(i).toSExpression() + " to function " + exprName
                 + " is of Sort: " + list.get(i).getSort() + ", but argument of Sort " + sorts.get(i) + " is expected.");
     });
-    Function f = new Function(exprName, returnSort, list);
-    Sentence.instances.put(f.toSExpression(), f);
-    return f;
+    Function f = Function.makeFunction(exprName, returnSort, list);
+    return Sentence.intern(f.toSExpression(), f);
   }
 
   protected Sentence parseTerm(LinkedList<String> stack, Map<String, Variable> quantifiedVars) {
@@ -290,13 +286,13 @@ public class SentenceReader extends AbstractSentenceReader {
           if (sort == Sort.BOOLEAN)
             s = new Predicate(name, args);
           else
-            s = new Function(name, sort, args);
+            s = Function.makeFunction(name, sort, args);
         } else {
           if (l.size() == args.size() && IntStream.range(0, args.size()).allMatch(i -> args.get(i).getSort().isSubSort(l.get(i)))) {
             if (sort == Sort.BOOLEAN)
               s = new Predicate(name, args);
             else
-              s = new Function(name, sort, args);
+              s = Function.makeFunction(name, sort, args);
             break;
           }
           System.out.println(name + " " + args);
@@ -305,7 +301,6 @@ public class SentenceReader extends AbstractSentenceReader {
       }
     }
 
-    Sentence.instances.putIfAbsent(s.toFullSExpression(), s);
-    return s;
+    return Sentence.intern(s.toFullSExpression(), s);
   }
 }
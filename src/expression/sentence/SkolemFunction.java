@@ -0,0 +1,82 @@
+package expression.sentence;
+
+import expression.Sort;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A SkolemFunction is a Function introduced to name the witness of an existential
+ * quantifier, as a function of the universally quantified variables it depends on.
+ * Unlike other Functions, a ground SkolemFunction term is itself an object of the
+ * domain, so universal quantifiers are instantiated with it as with any constant.
+ * <p>
+ * Since a universal may be instantiated with a SkolemFunction term which then gives
+ * rise to a deeper one, each SkolemFunction is declared with a maximum term depth.
+ * Ground terms nested more deeply are not objects of the domain, so no quantifier
+ * is instantiated with them (they are truncated).
+ */
+public class SkolemFunction extends Function {
+  private static long newSkolemFunctions = 1;
+
+  //The maximum term depth of each declared SkolemFunction, by name
+  private static Map<String, Integer> maxDepths = new ConcurrentHashMap<>();
+
+  SkolemFunction(String n, Sort sort, List<Sentence> sentences) {
+    super(n, sort, sentences);
+  }
+
+  /**
+   * Declare a new SkolemFunction with a name that is not in use
+   *
+   * @param returnType the Sort of the witnesses it names
+   * @param argTypes   the Sorts of the universally quantified variables it depends on
+   * @param maxDepth   the maximum depth of its ground terms which are objects of the domain
+   * @return the name of the new SkolemFunction
+   */
+  public static synchronized String declare(Sort returnType, List<Sort> argTypes, int maxDepth) {
+    String name;
+    do {
+      name = "sk#" + newSkolemFunctions++;
+    } while (Sentence.instances.containsKey(name) || Function.isDeclaration(name));
+    maxDepths.put(name, maxDepth);
+    Function.addDeclaration(name, returnType, new ArrayList<>(argTypes));
+    return name;
+  }
+
+  public static boolean isSkolemFunction(String name) {
+    return maxDepths.containsKey(name) && Function.isDeclaration(name);
+  }
+
+  /**
+   * Get the number of SkolemFunctions nested in a term
+   *
+   * @param s a term
+   * @return the depth of s, counting only SkolemFunctions
+   */
+  public static int getTermDepth(Sentence s) {
+    int depth = 0;
+    for (Sentence arg : s.args)
+      depth = Math.max(depth, getTermDepth(arg));
+    return s instanceof SkolemFunction ? depth + 1 : depth;
+  }
+
+  /**
+   * @return true if this is a ground term which is nested too deeply to be an object of the domain
+   */
+  public boolean isTruncated() {
+    return getFreeVariables().isEmpty() && getTermDepth(this) > maxDepths.getOrDefault(name, 0);
+  }
+
+  @Override
+  protected Set<Sentence> computeConstants() {
+    Set<Sentence> constants = super.computeConstants();
+    if (args.stream().anyMatch(arg -> !arg.getFreeVariables().isEmpty())
+            || getTermDepth(this) > maxDepths.getOrDefault(name, 0))
+      return constants;
+
+    Set<Sentence> c = new HashSet<>(constants);
+    c.add(this);
+    return Collections.unmodifiableSet(c);
+  }
+}
@@ -4,7 +4,7 @@ import expression.Sort;
 import logicalreasoner.inference.Inference;
 import logicalreasoner.truthassignment.TruthAssignment;
 
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -29,8 +29,13 @@ public class Variable extends Atom {
   }
 
   @Override
-  public Set<Sentence> getConstants() {
-    return new HashSet<>();
+  protected Set<Sentence> computeConstants() {
+    return Collections.emptySet();
+  }
+
+  @Override
+  protected Set<Variable> computeFreeVariables() {
+    return Collections.singleton(this);
   }
 
   @Override
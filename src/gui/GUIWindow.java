@@ -15,7 +15,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -94,7 +94,7 @@ public class GUIWindow extends JFrame {
         Sentence goal = null;
         try {
           goal = ProverMain.readInputFile(fileChooser.getSelectedFile(), premises);
-        } catch (FileNotFoundException e1) {
+        } catch (IOException e1) {
           e1.printStackTrace();
         }
         setProver(premises, goal, NewProofPanel.FOL_MODE);
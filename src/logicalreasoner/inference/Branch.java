@@ -5,9 +5,8 @@ import logicalreasoner.truthassignment.Pair;
 import logicalreasoner.truthassignment.TruthAssignment;
 import logicalreasoner.truthassignment.TruthValue;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -20,9 +19,13 @@ public class Branch extends Inference implements Comparable<Branch> {
 
   protected List<TruthAssignment> branches;
 
+  //Leaves in which this Branch has been resolved without branching
+  protected Set<TruthAssignment> resolved;
+
   public Branch(TruthAssignment p, Sentence s, int i, int j) {
     super(p, s, i, j);
     branches = new ArrayList<>();
+    resolved = Collections.newSetFromMap(new ConcurrentHashMap<>());
   }
 
   @Override
@@ -55,6 +58,53 @@ public class Branch extends Inference implements Comparable<Branch> {
     return branches;
   }
 
+  /**
+   * Remove every branch which is identical to, or contains all of the mappings of,
+   * another branch. Such a branch only constrains the other one further, so
+   * keeping the other branch alone preserves all models.
+   */
+  public void removeRedundantBranches() {
+    List<TruthAssignment> kept = new ArrayList<>(branches.size());
+    for (TruthAssignment h : branches) {
+      if (kept.stream().anyMatch(k -> subsumes(k, h)))
+        continue;
+      kept.removeIf(k -> subsumes(h, k));
+      kept.add(h);
+    }
+    if (kept.size() != branches.size())
+      branches = kept;
+  }
+
+  /**
+   * Check whether every mapping of h1 is also a mapping of h2
+   */
+  private static boolean subsumes(TruthAssignment h1, TruthAssignment h2) {
+    return h1.keySet().size() <= h2.keySet().size() && h1.keySet().stream().allMatch(s ->
+            (!h1.hasMapping(s, true) || h2.hasMapping(s, true)) && (!h1.hasMapping(s, false) || h2.hasMapping(s, false)));
+  }
+
+  /**
+   * Record that this Branch no longer needs to be applied to h or any of its descendants
+   *
+   * @param h the TruthAssignment this Branch was resolved in
+   */
+  public void setResolved(TruthAssignment h) {
+    resolved.add(h);
+  }
+
+  /**
+   * Check whether this Branch has been resolved in h or one of its ancestors
+   *
+   * @param h the TruthAssignment to check
+   * @return true if this Branch does not need to be applied to h
+   */
+  public boolean isResolved(TruthAssignment h) {
+    for (TruthAssignment t = h; t != null && !resolved.isEmpty(); t = t.getParent())
+      if (resolved.contains(t))
+        return true;
+    return false;
+  }
+
   public boolean equals(Object o) {
     if (this == o)
       return true;
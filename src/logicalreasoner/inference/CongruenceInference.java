@@ -0,0 +1,25 @@
+package logicalreasoner.inference;
+
+import expression.sentence.Sentence;
+import logicalreasoner.truthassignment.TruthAssignment;
+
+import java.util.stream.Collectors;
+
+/**
+ * A CongruenceInference gives a literal the value of another literal which is equal to it
+ * modulo the equalities of its branch, such as (P b) from (P a) and (= a b). Its origin is
+ * the literal whose value is copied, but it also depends on the equalities, so conflicts it
+ * causes are never traced back to branching decisions.
+ */
+public class CongruenceInference extends Decomposition {
+
+  public CongruenceInference(TruthAssignment h, Sentence o, int i, int j) {
+    super(h, o, i, j);
+  }
+
+  public String toString() {
+    return "CongruenceInference " + inferenceNum + "- origin: " + origin + "=" + parent.models(origin) + " [" + justificationNum + "] inferences: { "
+            + additions.keySet().stream().map(s -> s.toString() + "=" + additions.get(s)
+            + " [" + inferenceNum + "] ").collect(Collectors.joining()) + "}";
+  }
+}
@@ -5,8 +5,11 @@ import expression.sentence.Sentence;
 import expression.sentence.Variable;
 import logicalreasoner.truthassignment.Pair;
 import logicalreasoner.truthassignment.TruthAssignment;
+import logicalreasoner.truthassignment.TruthValue;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -33,26 +36,29 @@ public class UniversalInstantiation extends Inference {
     inferredOver.clear();
     ForAll f = (ForAll) origin;
     List<Pair> l = instances.stream().flatMap(instance -> {
+      // The same instance is merged into every origin of its constant
+      Sentence s = f.getInstance(instance);
+      TruthValue v = new TruthValue(s);
+      v.setTrue(inferenceNum);
+      v.addJustification(inferenceNum, this);
+      Map<Sentence, TruthValue> mapping = Collections.singletonMap(s, v);
+
       List<TruthAssignment> origins = h.getConstantOrigins(instance);
       if (origins.isEmpty())
-        return inferHelper(h, f, instance);
+        return inferHelper(h, mapping, s);
       else
-        return origins.stream().flatMap(o -> inferHelper(o, f, instance));
+        return origins.stream().flatMap(o -> inferHelper(o, mapping, s));
     }).collect(Collectors.toList());
     return l.stream();
   }
 
-  private Stream<Pair> inferHelper(TruthAssignment h, ForAll f, Sentence instance) {
+  private Stream<Pair> inferHelper(TruthAssignment h, Map<Sentence, TruthValue> mapping, Sentence s) {
     inferredOver.add(h);
-    TruthAssignment truthAssignment = new TruthAssignment();
-    Sentence s = f.instantiate(instance, var);
-    truthAssignment.setTrue(s, inferenceNum);
-    truthAssignment.getTruthValue(s).addJustification(inferenceNum, this);
-    return h.merge(truthAssignment);
+    return h.merge(mapping, s.getConstants());
   }
 
   public List<Sentence> getInstances() {
-    return instances.stream().map(i -> origin.instantiate(i, var)).collect(Collectors.toList());
+    return instances.stream().map(((ForAll) origin)::getInstance).collect(Collectors.toList());
   }
 
   public List<Sentence> getInstanceVars() {
@@ -0,0 +1,274 @@
+package logicalreasoner.prover;
+
+import expression.sentence.*;
+
+import java.util.*;
+
+/**
+ * The BDD class decides propositional relations between Sentences by compiling them
+ * into reduced ordered binary decision diagrams. Nodes are hash-consed in a unique
+ * table, so two Sentences are equivalent exactly when they compile to the same node.
+ * <p>
+ * Atoms (Propositions, Predicates and Identities) are ordered by their first occurrence
+ * in a depth first traversal of the Sentences compiled, which keeps atoms that occur
+ * together close together in the ordering. Compiled Sentences, and the results of the
+ * if-then-else operation all connectives are built from, are cached across queries.
+ * All tables are cleared once they grow past RESET_NODES, and a query which would
+ * need more than MAX_NODES nodes is abandoned (the query methods then return null).
+ * <p>
+ * Node 0 is the constant false, and node 1 the constant true.
+ */
+public class BDD {
+  public static final int FALSE = 0, TRUE = 1;
+  private static final int RESET_NODES = 1 << 20, MAX_NODES = 1 << 22, CACHE_SIZE = 1 << 18;
+
+  //The variable, low (false) child, and high (true) child of every node
+  private int[] vars, lows, highs;
+  //The unique table: a chained hash table over (var, low, high)
+  private int[] buckets, next;
+  private int size;
+
+  //A lossy cache of the results of ite
+  private int[] cacheF, cacheG, cacheH, cacheResult;
+
+  private Map<Sentence, Integer> variables, compiled;
+
+  private static class NodeLimitException extends RuntimeException {
+  }
+
+  public BDD() {
+    clear();
+  }
+
+  /**
+   * Remove all nodes, cached results and variables
+   */
+  public synchronized void clear() {
+    vars = new int[1024];
+    lows = new int[1024];
+    highs = new int[1024];
+    next = new int[1024];
+    buckets = new int[1024];
+    Arrays.fill(buckets, -1);
+    size = 0;
+    for (int i = FALSE; i <= TRUE; ++i) {   // Terminals come after every variable
+      vars[i] = Integer.MAX_VALUE;
+      lows[i] = highs[i] = i;
+      next[i] = -1;
+      ++size;
+    }
+
+    cacheF = new int[CACHE_SIZE];
+    cacheG = new int[CACHE_SIZE];
+    cacheH = new int[CACHE_SIZE];
+    cacheResult = new int[CACHE_SIZE];
+    Arrays.fill(cacheF, -1);
+
+    variables = new HashMap<>();
+    compiled = new HashMap<>();
+  }
+
+  /**
+   * @return the number of nodes (including both terminals) currently stored
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Test whether s1 and s2 are propositionally equivalent
+   *
+   * @return true if they are equivalent, false if not, or null if their diagrams are too large
+   */
+  public synchronized Boolean isEquivalent(Sentence s1, Sentence s2) {
+    int[] f = compileAll(s1, s2);
+    return f == null ? null : f[0] == f[1];
+  }
+
+  /**
+   * Test whether s1 and s2 cannot both be true
+   *
+   * @return true if they are contrary, false if not, or null if their diagrams are too large
+   */
+  public synchronized Boolean isContrary(Sentence s1, Sentence s2) {
+    int[] f = compileAll(s1, s2);
+    if (f == null)
+      return null;
+    try {
+      return ite(f[0], f[1], FALSE) == FALSE;
+    } catch (NodeLimitException e) {
+      clear();
+      return null;
+    }
+  }
+
+  /**
+   * Test whether s1 and s2 cannot both be false
+   *
+   * @return true if they are subcontrary, false if not, or null if their diagrams are too large
+   */
+  public synchronized Boolean isSubcontrary(Sentence s1, Sentence s2) {
+    int[] f = compileAll(s1, s2);
+    if (f == null)
+      return null;
+    try {
+      return ite(f[0], TRUE, f[1]) == TRUE;
+    } catch (NodeLimitException e) {
+      clear();
+      return null;
+    }
+  }
+
+  /**
+   * Compile every Sentence, after ordering all of their new atoms
+   *
+   * @return the node of each Sentence, or null if the node limit was exceeded
+   */
+  private int[] compileAll(Sentence... sentences) {
+    if (size > RESET_NODES)
+      clear();
+    for (Sentence s : sentences)
+      order(s);
+    try {
+      return Arrays.stream(sentences).mapToInt(this::compile).toArray();
+    } catch (NodeLimitException e) {
+      clear();
+      return null;
+    }
+  }
+
+  /**
+   * Give every atom of s which has no variable yet the next variable, in depth first order
+   */
+  private void order(Sentence s) {
+    if (compiled.containsKey(s) || s instanceof BooleanSentence)
+      return;
+    if (s instanceof Not || s instanceof And || s instanceof Or || s instanceof Implies || s instanceof Iff)
+      s.getArgs().forEach(this::order);
+    else if (s.isQuantifier())
+      throw new RuntimeException("Cannot run propositional proof over a quantified statement.");
+    else if (!(s instanceof Identity && s.getArgs().get(0).equals(s.getArgs().get(1))))
+      variables.putIfAbsent(s, variables.size());
+  }
+
+  private int compile(Sentence s) {
+    Integer n = compiled.get(s);
+    if (n != null)
+      return n;
+
+    int f;
+    List<Sentence> args = s.getArgs();
+    if (s == BooleanSentence.TRUE)
+      f = TRUE;
+    else if (s == BooleanSentence.FALSE)
+      f = FALSE;
+    else if (s instanceof Not)
+      f = not(compile(args.get(0)));
+    else if (s instanceof And) {
+      f = TRUE;
+      for (int i = 0; i < args.size() && f != FALSE; ++i)
+        f = ite(f, compile(args.get(i)), FALSE);
+    } else if (s instanceof Or) {
+      f = FALSE;
+      for (int i = 0; i < args.size() && f != TRUE; ++i)
+        f = ite(f, TRUE, compile(args.get(i)));
+    } else if (s instanceof Implies)
+      f = ite(compile(args.get(0)), compile(args.get(1)), TRUE);
+    else if (s instanceof Iff) {
+      int b = compile(args.get(1));
+      f = ite(compile(args.get(0)), b, not(b));
+    } else if (s instanceof Identity && args.get(0).equals(args.get(1)))
+      f = TRUE;
+    else
+      f = mk(variables.get(s), FALSE, TRUE);
+
+    compiled.put(s, f);
+    return f;
+  }
+
+  private int not(int f) {
+    return ite(f, FALSE, TRUE);
+  }
+
+  /**
+   * Build the diagram of (if f then g else h)
+   */
+  private int ite(int f, int g, int h) {
+    if (f == TRUE)
+      return g;
+    if (f == FALSE || g == h)
+      return h;
+    if (g == TRUE && h == FALSE)
+      return f;
+
+    int slot = hash(f, g, h) & (CACHE_SIZE - 1);
+    if (cacheF[slot] == f && cacheG[slot] == g && cacheH[slot] == h)
+      return cacheResult[slot];
+
+    int v = Math.min(vars[f], Math.min(vars[g], vars[h]));
+    int low = ite(cofactor(f, v, false), cofactor(g, v, false), cofactor(h, v, false)),
+            high = ite(cofactor(f, v, true), cofactor(g, v, true), cofactor(h, v, true)),
+            result = mk(v, low, high);
+
+    cacheF[slot] = f;
+    cacheG[slot] = g;
+    cacheH[slot] = h;
+    cacheResult[slot] = result;
+    return result;
+  }
+
+  private int cofactor(int f, int v, boolean value) {
+    if (vars[f] != v)
+      return f;
+    return value ? highs[f] : lows[f];
+  }
+
+  /**
+   * Get the unique node with the given variable and children
+   */
+  private int mk(int v, int low, int high) {
+    if (low == high)
+      return low;
+    int bucket = hash(v, low, high) & (buckets.length - 1);
+    for (int n = buckets[bucket]; n >= 0; n = next[n])
+      if (vars[n] == v && lows[n] == low && highs[n] == high)
+        return n;
+
+    if (size >= MAX_NODES)
+      throw new NodeLimitException();
+    if (size == vars.length) {
+      grow();
+      bucket = hash(v, low, high) & (buckets.length - 1);
+    }
+    int n = size++;
+    vars[n] = v;
+    lows[n] = low;
+    highs[n] = high;
+    next[n] = buckets[bucket];
+    buckets[bucket] = n;
+    return n;
+  }
+
+  /**
+   * Double the capacity of the node arrays, and rehash the unique table
+   */
+  private void grow() {
+    int capacity = vars.length * 2;
+    vars = Arrays.copyOf(vars, capacity);
+    lows = Arrays.copyOf(lows, capacity);
+    highs = Arrays.copyOf(highs, capacity);
+    next = Arrays.copyOf(next, capacity);
+    buckets = new int[capacity];
+    Arrays.fill(buckets, -1);
+    for (int n = TRUE + 1; n < size; ++n) {
+      int bucket = hash(vars[n], lows[n], highs[n]) & (capacity - 1);
+      next[n] = buckets[bucket];
+      buckets[bucket] = n;
+    }
+  }
+
+  private static int hash(int a, int b, int c) {
+    int h = a * 0x9E3779B1 + b * 0x85EBCA6B + c * 0xC2B2AE35;
+    return h ^ (h >>> 15);
+  }
+}
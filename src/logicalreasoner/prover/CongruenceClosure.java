@@ -0,0 +1,165 @@
+package logicalreasoner.prover;
+
+import expression.sentence.Sentence;
+
+import java.util.*;
+
+/**
+ * The CongruenceClosure class maintains the equivalence classes of ground terms under a
+ * set of equalities, closed under congruence: f(a) and f(b) are equal whenever a and b are.
+ * Terms are interned Sentences, kept in a union-find structure with a signature table
+ * mapping each function application, with its arguments replaced by their representatives,
+ * to a term with that signature.
+ * <p>
+ * Every change is recorded on a trail, so that the state saved by push can be restored by
+ * the matching pop. A tableau can then be walked depth first with a single CongruenceClosure,
+ * merging the equalities of each TruthAssignment on the way down and undoing them on the way
+ * back up, so that branches share the work done for their common ancestors. Since pop must be
+ * cheap, the union-find uses union by size without path compression.
+ */
+public class CongruenceClosure {
+  private final Map<Sentence, Sentence> parent = new HashMap<>();
+  private final Map<Sentence, Integer> size = new HashMap<>();
+  //The function applications with an argument in each class, by representative
+  private final Map<Sentence, List<Sentence>> uses = new HashMap<>();
+  private final Map<List<Object>, Sentence> signatures = new HashMap<>();
+
+  private final Deque<Runnable> trail = new ArrayDeque<>();
+  private final Deque<Integer> marks = new ArrayDeque<>();
+
+  /**
+   * Save the current equivalence classes
+   */
+  public void push() {
+    marks.push(trail.size());
+  }
+
+  /**
+   * Restore the equivalence classes saved by the matching push
+   */
+  public void pop() {
+    int mark = marks.pop();
+    while (trail.size() > mark)
+      trail.pop().run();
+  }
+
+  /**
+   * Add a term (and its subterms) as a class of its own, unless it is already known
+   *
+   * @param t a ground term
+   */
+  public void add(Sentence t) {
+    if (parent.containsKey(t))
+      return;
+    t.getArgs().forEach(this::add);
+
+    parent.put(t, t);
+    size.put(t, 1);
+    trail.push(() -> {
+      parent.remove(t);
+      size.remove(t);
+    });
+    if (t.numArgs() == 0)
+      return;
+
+    t.getArgs().stream().map(this::find).distinct().forEach(r -> {
+      List<Sentence> l = uses.computeIfAbsent(r, k -> new ArrayList<>());
+      l.add(t);
+      trail.push(() -> l.remove(l.size() - 1));
+    });
+    Sentence u = signatures.get(getSignature(t));
+    if (u == null)
+      putSignature(t);
+    else
+      merge(t, u);
+  }
+
+  /**
+   * @return the representative of the class of t
+   */
+  public Sentence find(Sentence t) {
+    Sentence p = parent.get(t);
+    if (p == null)
+      return t;
+    while (p != t) {
+      t = p;
+      p = parent.get(t);
+    }
+    return t;
+  }
+
+  public boolean areEqual(Sentence a, Sentence b) {
+    return find(a) == find(b);
+  }
+
+  /**
+   * Get the name of a term or atom with its arguments replaced by their representatives.
+   * Two atoms with the same signature are equal, modulo the equalities merged so far.
+   *
+   * @param s a ground term or atom
+   * @return the signature of s
+   */
+  public List<Object> getSignature(Sentence s) {
+    List<Object> signature = new ArrayList<>(s.numArgs() + 1);
+    signature.add(s.getName());
+    s.getArgs().forEach(a -> signature.add(find(a)));
+    return signature;
+  }
+
+  /**
+   * Make a and b equal, along with every pair of terms congruent as a result
+   *
+   * @param a a ground term
+   * @param b a ground term
+   */
+  public void merge(Sentence a, Sentence b) {
+    add(a);
+    add(b);
+    Deque<Sentence[]> pending = new ArrayDeque<>();
+    pending.add(new Sentence[]{a, b});
+    while (!pending.isEmpty()) {
+      Sentence[] p = pending.poll();
+      Sentence ra = find(p[0]), rb = find(p[1]);
+      if (ra == rb)
+        continue;
+      if (size.get(ra) > size.get(rb)) {
+        Sentence r = ra;
+        ra = rb;
+        rb = r;
+      }
+      link(ra, rb);
+
+      for (Sentence t : new ArrayList<>(uses.getOrDefault(ra, Collections.emptyList()))) {
+        Sentence u = signatures.get(getSignature(t));
+        if (u == null)
+          putSignature(t);
+        else if (find(u) != find(t))
+          pending.add(new Sentence[]{t, u});
+      }
+    }
+  }
+
+  /**
+   * Put the class of the smaller representative ra under rb
+   */
+  private void link(Sentence ra, Sentence rb) {
+    int sa = size.get(ra), sb = size.get(rb);
+    parent.put(ra, rb);
+    size.put(rb, sa + sb);
+    List<Sentence> moved = uses.getOrDefault(ra, Collections.emptyList());
+    List<Sentence> l = uses.computeIfAbsent(rb, k -> new ArrayList<>());
+    int n = l.size();
+    l.addAll(moved);
+    trail.push(() -> {
+      parent.put(ra, ra);
+      size.put(rb, sb);
+      l.subList(n, l.size()).clear();
+    });
+  }
+
+  private void putSignature(Sentence t) {
+    List<Object> signature = getSignature(t);
+    signatures.put(signature, t);
+    trail.push(() -> signatures.remove(signature));
+  }
+}
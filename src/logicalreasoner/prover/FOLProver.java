@@ -4,16 +4,29 @@ import expression.Sort;
 import expression.sentence.Constant;
 import expression.sentence.Exists;
 import expression.sentence.ForAll;
+import expression.sentence.Function;
+import expression.sentence.Identity;
+import expression.sentence.Predicate;
 import expression.sentence.Sentence;
+import expression.sentence.SkolemFunction;
+import logicalreasoner.inference.CongruenceInference;
+import logicalreasoner.inference.Decomposition;
 import logicalreasoner.inference.Inference;
 import logicalreasoner.inference.UniversalInstantiation;
 import logicalreasoner.truthassignment.Pair;
 import logicalreasoner.truthassignment.TruthAssignment;
 import logicalreasoner.truthassignment.TruthValue;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.PriorityQueue;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -23,6 +36,51 @@ import java.util.stream.Stream;
  * reasoning over first order logic.
  */
 public class FOLProver extends Prover {
+  //With trigger instantiation, every universal is still instantiated exhaustively once in this many rounds
+  public static final int EXHAUSTIVE_PERIOD = 4;
+
+  //The order in which quantifiers are instantiated within a round
+  protected Comparator<Sentence> quantifierComparator = Sentence.quantifierComparator;
+
+  //The number of rounds of quantifier instantiation made so far
+  protected int rounds = 0;
+
+  //The maximum number of rounds of quantifier instantiation (null if unbounded)
+  protected Integer roundBound = null;
+
+  //Whether the last run was stopped by the round bound
+  protected boolean reachedBound = false;
+
+  //Whether the last run left an open branch mentioning a SkolemFunction term too deep to instantiate quantifiers with
+  protected boolean truncated = false;
+
+  //The quantified Sentences waiting to be instantiated (created by the first round)
+  protected QuantifierAgenda agenda;
+
+  //Whether universals are only instantiated with constants matching one of their triggers
+  protected boolean triggerInstantiation = false;
+
+  //Whether an Identity has been mapped, so that open branches are closed under equality (null until first checked)
+  private Boolean equality = null;
+
+  //Whether the current round instantiates every universal, and whether the last round instantiated nothing
+  private boolean exhaustiveRound = true, stalled = false;
+
+  //The argument positions of the bound variable in the atoms and function terms of each universal, by name
+  private Map<ForAll, Map<String, Set<Integer>>> triggers = new HashMap<>();
+
+  //The constants at each argument position of the atoms and function terms in open branches, by name (built as needed each round)
+  private Map<String, Map<Integer, Set<Sentence>>> groundArguments;
+
+  //The true Identities from the root to the last leaf closed under equality, kept between calls (null until first needed)
+  private CongruenceClosure closure;
+
+  //The TruthAssignments whose Identities are merged in the closure, from the root down, each with its own mark
+  private final List<TruthAssignment> closurePath = new ArrayList<>();
+
+  //The true Identities mapped since the last closure under equality, and the TruthAssignments given a ground atom since then
+  private final Map<TruthAssignment, List<Sentence>> newIdentities = new HashMap<>();
+  private final Set<TruthAssignment> newAtoms = new HashSet<>();
 
   /**
    * Initialize the reasoner with the premises and the negation of all goals
@@ -59,8 +117,72 @@ public class FOLProver extends Prover {
     super(premises, goals, print);
   }
 
-  private PriorityQueue<Pair> makeQuantifierQueue() {
-    PriorityQueue<Pair> quantifierQueue = new PriorityQueue<>((e1, e2) -> {
+  public FOLProver(Set<Sentence> premises, Set<Sentence> goals, boolean print, Preprocessor preprocessor) {
+    super(premises, goals, print, preprocessor);
+  }
+
+  public FOLProver(KnowledgeBase knowledgeBase, Set<Sentence> goals, boolean print) {
+    super(knowledgeBase, goals, print);
+  }
+
+  /**
+   * Save the premises asserted so far. The agenda and the CongruenceClosure are rebuilt from the tree of the new level.
+   */
+  @Override
+  public void push() {
+    super.push();
+    agenda = null;
+    closure = null;
+    closurePath.clear();
+  }
+
+  /**
+   * Retract every premise asserted since the last push. The agenda and the CongruenceClosure are rebuilt from the tree restored.
+   */
+  @Override
+  public void pop() {
+    super.pop();
+    agenda = null;
+    closure = null;
+    closurePath.clear();
+  }
+
+  /**
+   * Bring the agenda up to date for a new round: add the universal quantifiers which
+   * new constants have made undecomposed, and those deferred by the last round. Every open
+   * branch is only searched for quantifiers when the agenda is created, or when nothing
+   * tracked by it is left to instantiate.
+   */
+  private void refreshAgenda() {
+    List<Pair> reopened = masterFunction.pollReopenedUniversals();
+    if (agenda == null) {
+      agenda = makeQuantifierAgenda();
+    } else {
+      reopened.forEach(agenda::add);
+      agenda.refresh();
+    }
+    if (agenda.isEmpty())
+      openBranches.stream().flatMap(TruthAssignment::flattenUndecomposedSerial)
+              .filter(p -> p.sentence.isQuantifier()).forEach(agenda::add);
+  }
+
+  /**
+   * Drop the agenda entries of every TruthAssignment left without an open leaf
+   */
+  @Override
+  protected void closed(List<TruthAssignment> leaves) {
+    if (agenda == null)
+      return;
+    Set<TruthAssignment> open = new HashSet<>(openBranches), removed = new HashSet<>();
+    for (TruthAssignment leaf : leaves)
+      for (TruthAssignment t = leaf; t != null && !removed.contains(t) && t.getLeaves().noneMatch(open::contains); t = t.getParent()) {
+        removed.add(t);
+        agenda.remove(t);
+      }
+  }
+
+  private QuantifierAgenda makeQuantifierAgenda() {
+    return new QuantifierAgenda((e1, e2) -> {
       if (!e1.truthAssignment.models(e1.sentence)) {      // Always remove negations (false assignments) first
         if (!e2.truthAssignment.models(e2.sentence))
           return 0;
@@ -69,47 +191,95 @@ public class FOLProver extends Prover {
       if (!e2.truthAssignment.models(e2.sentence))
         return 1;
 
-      return Sentence.quantifierComparator.compare(e1.sentence, e2.sentence);
+      return quantifierComparator.compare(e1.sentence, e2.sentence);
     });
+  }
 
-    openBranches.stream().flatMap(TruthAssignment::flattenUndecomposedSerial)
-            .filter(p -> p.sentence.isQuantifier()).forEach(quantifierQueue::add);
-    return quantifierQueue;
+  /**
+   * Replace the order in which quantifiers are instantiated within a round
+   * (negated quantifiers are always instantiated first)
+   *
+   * @param quantifierComparator the new ordering of quantified Sentences
+   */
+  public void setQuantifierComparator(Comparator<Sentence> quantifierComparator) {
+    this.quantifierComparator = quantifierComparator;
   }
 
-  private void printQueue(PriorityQueue<Pair> queue) {
-    System.out.print("[");
-    PriorityQueue<Pair> q = new PriorityQueue<>(queue);
-    if (!q.isEmpty())
-      System.out.print(q.poll().sentence);
-    while (!q.isEmpty()) {
-      System.out.print(", " + q.poll().sentence);
-    }
-    System.out.println("]");
+  /**
+   * Only instantiate true universals with constants which appear, in an open branch, as the argument
+   * of an atom or function term in the same position as the bound variable appears in an atom or
+   * function term of the same name in the universal (a trigger). Universals whose variable is never
+   * a direct argument of an atom or function term have no triggers, and are instantiated with every
+   * constant. Every universal is instantiated exhaustively
+   * in each round after one which instantiated nothing, and once every EXHAUSTIVE_PERIOD rounds,
+   * so no proof is lost.
+   *
+   * @param triggerInstantiation true to filter instances by their triggers, false to instantiate exhaustively
+   */
+  public void setTriggerInstantiation(boolean triggerInstantiation) {
+    this.triggerInstantiation = triggerInstantiation;
+  }
+
+  /**
+   * @return the argument positions of the bound variable of f in the atoms and function terms of its body, by name
+   */
+  private Map<String, Set<Integer>> getTriggers(ForAll f) {
+    return triggers.computeIfAbsent(f, k -> {
+      Map<String, Set<Integer>> t = new HashMap<>();
+      f.getSentence().getSubSentences().filter(s -> s instanceof Function || s instanceof Identity).forEach(s -> {
+        List<Sentence> args = s.getArgs();
+        for (int i = 0; i < args.size(); ++i)
+          if (args.get(i).equals(f.getVariable()))
+            t.computeIfAbsent(s.getName(), n -> new HashSet<>()).add(i);
+      });
+      return t;
+    });
+  }
+
+  /**
+   * Check whether instantiating f with c would match one of its triggers
+   */
+  private boolean isTriggered(ForAll f, Sentence c) {
+    Map<String, Set<Integer>> t = getTriggers(f);
+    if (t.isEmpty())
+      return true;
+
+    if (groundArguments == null)
+      groundArguments = new HashMap<>();
+    return t.entrySet().stream().anyMatch(e -> {
+      Map<Integer, Set<Sentence>> positions = groundArguments.computeIfAbsent(e.getKey(), this::getGroundArguments);
+      return e.getValue().stream().anyMatch(i -> positions.getOrDefault(i, Collections.emptySet()).contains(c));
+    });
   }
 
-  private Inference instantiateQuantifier(PriorityQueue<Pair> quantifierQueue) {
+  /**
+   * @return the constants at each argument position of the atoms or function terms named name in open branches
+   */
+  private Map<Integer, Set<Sentence>> getGroundArguments(String name) {
+    Map<Integer, Set<Sentence>> positions = new HashMap<>();
+    openBranches.stream().flatMap(h -> Stream.concat(h.getAtoms(name), h.getTerms(name))).distinct().forEach(s -> {
+      List<Sentence> args = s.getArgs();
+      for (int i = 0; i < args.size(); ++i)
+        if (args.get(i) instanceof Constant || args.get(i) instanceof SkolemFunction)
+          positions.computeIfAbsent(i, n -> new HashSet<>()).add(args.get(i));
+    });
+    return positions;
+  }
+
+  private Inference instantiateQuantifier() {
     //System.out.println("instantiateQuantifier");
     //System.out.println("################################################\n");
-    //printQueue(quantifierQueue);
     Inference i = null;
     Pair p;
     TruthAssignment h;
     Sentence s;
 
     while (i == null) {
-      if (quantifierQueue.isEmpty()) {
+      p = agenda.poll();   // Skips anything decomposed since it was added
+      if (p == null)
         return null;
-      }
-
-      p = quantifierQueue.poll();
       h = p.truthAssignment;
       s = p.sentence;
-      if (h.isDecomposed(s))
-        continue;
-
-      if (s == null)
-        return null;
       if (h.models(s) && s instanceof ForAll) {
         TruthValue v = h.getTruthValue(s);
         Sort sort = ((ForAll) s).getVariable().getSort();
@@ -122,6 +292,17 @@ public class FOLProver extends Prover {
               l.addConstant(c);
           });
         }
+
+        if (!exhaustiveRound) {
+          ForAll f = (ForAll) s;
+          List<Sentence> instances = v.getUninstantiatedConstants().stream()
+                  .filter(c -> isTriggered(f, c)).collect(Collectors.toList());
+          if (instances.size() < v.getUninstantiatedConstants().size())
+            agenda.defer(p);   // The untriggered constants are left for a later round
+          if (!instances.isEmpty())
+            i = f.reason(h, inferenceCount++, h.getInferenceNum(s, true), instances);
+          continue;
+        }
       }
 
       i = s.reason(h, inferenceCount++,
@@ -140,42 +321,295 @@ public class FOLProver extends Prover {
     return i;
   }
 
+  /**
+   * Instantiate the quantified Sentences waiting on the agenda, up to and including the first one
+   * which is not a true universal. The UniversalInstantiations are made and numbered serially in
+   * agenda order, and their instances are built in parallel. They are then grouped by the uppermost
+   * TruthAssignment they are inferred over on each path, and each group is merged into its subtree by
+   * its own task on the common ForkJoinPool, in the order of their numbers. The subtrees are disjoint;
+   * the only change made above them, to the universals of their shared ancestors, is locked by
+   * TruthAssignment. The new mappings are then added to the agenda serially, in the order of the
+   * numbers. Any other quantifier is inferred by itself, as it may introduce a constant.
+   *
+   * @return true if any quantified Sentence was instantiated
+   */
+  private boolean instantiateQuantifiers() {
+    List<UniversalInstantiation> batch = new ArrayList<>();
+    Inference i;
+    do {
+      i = instantiateQuantifier();
+      if (i instanceof UniversalInstantiation)
+        batch.add((UniversalInstantiation) i);
+    } while (i instanceof UniversalInstantiation && !isStopped());
+
+    batch.parallelStream().forEach(UniversalInstantiation::getInstances);   // Builds and caches every instance
+    List<List<Pair>> mappings = mergeInSubtrees(batch);
+    for (int k = 0; k < batch.size(); ++k) {
+      inferenceList.add(batch.get(k));
+      mapped(mappings.get(k).stream());
+    }
+    if (i != null)
+      infer(i);
+    return i != null || !batch.isEmpty();
+  }
+
+  /**
+   * Merge the instances of each UniversalInstantiation into the tree, one ForkJoinTask for each
+   * disjoint subtree they are inferred over
+   *
+   * @param batch UniversalInstantiations, in the order of their numbers
+   * @return the mappings made by each, in the same order
+   */
+  private List<List<Pair>> mergeInSubtrees(List<UniversalInstantiation> batch) {
+    Set<TruthAssignment> parents = batch.stream().map(Inference::getParent).collect(Collectors.toSet());
+    Map<TruthAssignment, List<Integer>> subtrees = new LinkedHashMap<>();
+    for (int k = 0; k < batch.size(); ++k) {
+      TruthAssignment root = null;
+      for (TruthAssignment t = batch.get(k).getParent(); t != null; t = t.getParent())
+        if (parents.contains(t))
+          root = t;
+      subtrees.computeIfAbsent(root, r -> new ArrayList<>()).add(k);
+    }
+
+    List<List<Pair>> mappings = new ArrayList<>(Collections.nCopies(batch.size(), null));
+    List<Runnable> tasks = subtrees.values().stream().<Runnable>map(l -> () -> l.forEach(k ->
+            mappings.set(k, batch.get(k).infer(batch.get(k).getParent()).collect(Collectors.toList()))))
+            .collect(Collectors.toList());
+    if (tasks.size() == 1)
+      tasks.get(0).run();
+    else
+      ForkJoinTask.invokeAll(tasks.stream().map(ForkJoinTask::adapt).collect(Collectors.toList()));
+    return mappings;
+  }
+
   public Stream<Pair> infer(Inference i) {
     if (i instanceof UniversalInstantiation) {
       inferenceList.add(i);
-      return i.infer(i.getParent());
+      List<Pair> pairs = i.infer(i.getParent()).collect(Collectors.toList());
+      mapped(pairs.stream());
+      return pairs.stream();
     } else {
       return super.infer(i);
     }
   }
 
   /**
-   * Run the prover over the given premises & conclusion
+   * Add every quantified Sentence among the new mappings to the agenda, and note any Identity
+   */
+  @Override
+  protected void mapped(Stream<Pair> pairs) {
+    pairs.forEach(p -> {
+      if (p.sentence instanceof Identity)
+        equality = true;
+      else if (agenda != null && p.sentence.isQuantifier())
+        agenda.add(p);
+      if (closure != null && isGroundAtom(p.sentence)) {
+        newAtoms.add(p.truthAssignment);
+        if (p.sentence instanceof Identity && p.truthAssignment.getTruthValue(p.sentence).contains(true))
+          newIdentities.computeIfAbsent(p.truthAssignment, k -> new ArrayList<>()).add(p.sentence);
+      }
+    });
+  }
+
+  private static boolean isGroundAtom(Sentence s) {
+    return (s instanceof Predicate || s instanceof Identity) && s.numArgs() > 0 && s.getFreeVariables().isEmpty();
+  }
+
+  /**
+   * Decompose every open branch, then close it under the equalities it contains
+   */
+  @Override
+  protected void applyDecompositions() {
+    super.applyDecompositions();
+    if (equality == null)
+      equality = openBranches.stream().anyMatch(h -> h.getAtoms(Identity.NAME).findAny().isPresent());
+    while (equality && !openBranches.isEmpty() && applyCongruences())
+      super.applyDecompositions();
+  }
+
+  /**
+   * Close the open branches under their true Identities. In each open branch, every ground literal is
+   * given the values of the literals equal to it, and every false Identity between equal terms is made
+   * true as well (closing the branch). A single CongruenceClosure is kept between calls, holding the
+   * Identities on the path to the last leaf checked. Only the Identities mapped since the last call are
+   * merged into it, and only the leaves below a TruthAssignment given a ground atom since then are checked
+   * again, since the others are already closed under equality.
+   *
+   * @return true if any literal was given a new value
+   */
+  private boolean applyCongruences() {
+    List<TruthAssignment> leaves;
+    if (closure == null) {
+      closure = new CongruenceClosure();
+      leaves = openBranches;
+    } else {
+      int depth = closurePath.size();
+      for (TruthAssignment t : newIdentities.keySet())
+        if (closurePath.contains(t))
+          depth = Math.min(depth, closurePath.indexOf(t));
+      if (depth < closurePath.size()) {   // Undo the merges below it, then add its new Identities on top
+        TruthAssignment t = closurePath.get(depth);
+        truncateClosure(depth + 1);
+        newIdentities.get(t).forEach(e -> closure.merge(e.getSubSentence(0), e.getSubSentence(1)));
+      }
+      leaves = openBranches.stream().filter(l -> {
+        for (TruthAssignment t = l; t != null; t = t.getParent())
+          if (newAtoms.contains(t))
+            return true;
+        return false;
+      }).collect(Collectors.toList());
+    }
+    newIdentities.clear();
+    newAtoms.clear();
+
+    List<Inference> inferences = new ArrayList<>();
+    for (TruthAssignment leaf : leaves) {
+      moveClosure(leaf);
+      inferences.addAll(getCongruences(leaf, closure));
+    }
+    inferences.forEach(i -> {
+      mapped(i.infer(i.getParent()));
+      inferenceList.add(i);
+    });
+    return !inferences.isEmpty();
+  }
+
+  /**
+   * Bring the closure to the path from the root to leaf, undoing the merges of the TruthAssignments
+   * which are not on it, and merging the true Identities of those which were not yet
+   */
+  private void moveClosure(TruthAssignment leaf) {
+    List<TruthAssignment> path = new ArrayList<>();
+    for (TruthAssignment t = leaf; t != null; t = t.getParent())
+      path.add(t);
+    Collections.reverse(path);
+
+    int common = 0;
+    while (common < closurePath.size() && common < path.size() && closurePath.get(common) == path.get(common))
+      ++common;
+    truncateClosure(common);
+    for (TruthAssignment t : path.subList(common, path.size())) {
+      closure.push();
+      closurePath.add(t);
+      t.keySet().stream().filter(s -> s instanceof Identity && s.getFreeVariables().isEmpty() && t.getTruthValue(s).contains(true))
+              .forEach(s -> closure.merge(s.getSubSentence(0), s.getSubSentence(1)));
+    }
+  }
+
+  /**
+   * Undo the merges of every TruthAssignment in the closure path below the first n
+   */
+  private void truncateClosure(int n) {
+    while (closurePath.size() > n) {
+      closure.pop();
+      closurePath.remove(closurePath.size() - 1);
+    }
+  }
+
+  /**
+   * @param leaf    an open leaf
+   * @param closure the CongruenceClosure of the true Identities from leaf to the root
+   * @return the CongruenceInferences which give the literals of leaf the values of literals equal to them
+   */
+  private List<Inference> getCongruences(TruthAssignment leaf, CongruenceClosure closure) {
+    List<Sentence> atoms = leaf.getAtoms().collect(Collectors.toList());
+    atoms.forEach(s -> s.getArgs().forEach(closure::add));   // Merges congruent function terms
+
+    List<Inference> inferences = new ArrayList<>();
+    Map<List<Object>, List<Sentence>> classes = new HashMap<>();
+    for (Sentence s : atoms) {
+      if (s instanceof Identity) {
+        if (leaf.hasMapping(s, false) && !leaf.hasMapping(s, true) && closure.areEqual(s.getSubSentence(0), s.getSubSentence(1))) {
+          Decomposition d = new CongruenceInference(leaf, s, inferenceCount++, leaf.getInferenceNum(s, false));
+          d.setTrue(s);
+          inferences.add(d);
+        }
+      } else
+        classes.computeIfAbsent(closure.getSignature(s), k -> new ArrayList<>()).add(s);
+    }
+
+    classes.values().stream().filter(c -> c.size() > 1).forEach(c -> {
+      for (boolean b : new boolean[]{true, false}) {
+        Sentence source = c.stream().filter(s -> leaf.hasMapping(s, b)).findFirst().orElse(null);
+        if (source == null)
+          continue;
+        c.stream().filter(s -> !leaf.hasMapping(s, b)).forEach(s -> {
+          Decomposition d = new CongruenceInference(leaf, source, inferenceCount++, leaf.getInferenceNum(source, b));
+          if (b)
+            d.setTrue(s);
+          else
+            d.setFalse(s);
+          inferences.add(d);
+        });
+      }
+    });
+    return inferences;
+  }
+
+  /**
+   * Bound the number of rounds of quantifier instantiation. Each round instantiates every
+   * quantifier over the constants known so far, so constants introduced in round k are
+   * nested at most k existential instantiations deep. A run stopped by the bound reports
+   * the argument as unknown; raising the bound and running again continues from the tree
+   * it reached, rather than starting over, since the rounds already made would be repeated.
+   *
+   * @param roundBound the maximum number of rounds (or null for no bound)
+   */
+  public void setRoundBound(Integer roundBound) {
+    this.roundBound = roundBound;
+  }
+
+  /**
+   * @return true if the proof was stopped by the round bound without a verdict
+   */
+  public boolean reachedBound() {
+    return reachedBound;
+  }
+
+  /**
+   * @return true if the proof left an open branch with a truncated SkolemFunction term, so that
+   * the premises and negated goals may still be inconsistent
+   */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public int getRounds() {
+    return rounds;
+  }
+
+  /**
+   * Run the prover over the given premises & conclusion,
+   * or continue it from where the round bound stopped it
    */
   public void run() {
     startTime = System.currentTimeMillis();
-    printArgument();
+    reachedBound = false;
+    truncated = false;
+    if (rounds == 0)
+      printArgument();
     while (!reasoningCompleted()) {
       boolean updated = false;
       runPropositionally();
 
-      if (maxRuntime != null && (System.currentTimeMillis() - startTime) >= maxRuntime)
+      if (isStopped())
         return;
       if (isInvalid() || openBranches.isEmpty())
         break;
-
-      PriorityQueue<Pair> quantifierQueue = makeQuantifierQueue();
-      Inference i;
-      while (!(quantifierQueue.isEmpty())) {
-        i = instantiateQuantifier(quantifierQueue);
-        updated = updated || i != null;
-        if (i != null) {
-          infer(i).filter(p -> p.sentence.isQuantifier()).forEach(p -> {
-            if (!quantifierQueue.contains(p))
-              quantifierQueue.add(p);
-          });
-        }
+      if (roundBound != null && rounds >= roundBound) {
+        reachedBound = true;
+        if (print)
+          System.out.println("\nUnknown at bound " + roundBound + ".\n");
+        return;
       }
+      ++rounds;
+
+      refreshAgenda();
+      exhaustiveRound = !triggerInstantiation || stalled || rounds % EXHAUSTIVE_PERIOD == 0;
+      groundArguments = null;
+      while (!agenda.isEmpty() && !isStopped())
+        updated = instantiateQuantifiers() || updated;   // Quantifiers they map are added to the agenda by mapped
+      stalled = !updated;
 
       while (updated && !branchQueue.isEmpty())
         addBranches();
@@ -186,6 +620,14 @@ public class FOLProver extends Prover {
       //printInferences();
       //printInferenceList();
     }
+    if (preprocessor != null && preprocessor.getSkolemDepth() > 0 && openBranches.stream()
+            .flatMap(TruthAssignment::flattenSerial).flatMap(p -> p.sentence.getSubSentences())
+            .anyMatch(s -> s instanceof SkolemFunction && ((SkolemFunction) s).isTruncated())) {
+      truncated = true;
+      if (print)
+        System.out.println("\nUnknown at Skolem term depth " + preprocessor.getSkolemDepth() + ".\n");
+      return;
+    }
     finishedProof = true;
     printResult();
   }
@@ -1,11 +1,19 @@
 package logicalreasoner.prover;
 
+import expression.Sort;
 import expression.sentence.DeclarationParser;
+import expression.sentence.Exists;
 import expression.sentence.Sentence;
+import expression.sentence.SkolemFunction;
+import logicalreasoner.inference.UniversalInstantiation;
+import logicalreasoner.truthassignment.Pair;
+import logicalreasoner.truthassignment.TruthAssignment;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * First Order Logic Tests from Bram's Handout.
@@ -17,11 +25,20 @@ import java.util.*;
  */
 public class FOLTests {
   public static void runProver(List<String> declarations, Set<String> premises, String goal, boolean validArgument) {
+    runProver(declarations, premises, goal, validArgument, null);
+  }
+
+  /**
+   * Run a FOLProver over the premises and goal, rewriting them with the preprocessor first (unless it is null)
+   */
+  public static void runProver(List<String> declarations, Set<String> premises, String goal, boolean validArgument,
+                               Preprocessor preprocessor) {
     declarations.forEach(DeclarationParser::parseDeclaration);
     Set<Sentence> p = new HashSet<>();
     premises.forEach(premise -> p.add(Sentence.makeSentenceStrict(premise)));
 
-    Prover prover = new FOLProver(p, Collections.singleton(Sentence.makeSentence(goal)), true);
+    Set<Sentence> goals = Collections.singleton(Sentence.makeSentence(goal));
+    Prover prover = preprocessor == null ? new FOLProver(p, goals, true) : new FOLProver(p, goals, true, preprocessor);
     prover.run();
     if (!prover.finishedProof())
       throw new RuntimeException("Prover could not finish proof in the given amount of time.");
@@ -32,6 +49,50 @@ public class FOLTests {
     Sentence.clearDeclarations();
   }
 
+  /**
+   * Check the verdict given on each goal
+   *
+   * @param goals whether each goal follows from the premises
+   * @param prove gives true if a goal was proven valid, false if it was proven invalid
+   */
+  private static void assertResults(Stream<Map.Entry<String, Boolean>> goals, java.util.function.Function<Sentence, Boolean> prove) {
+    goals.forEach(e -> {
+      Sentence goal = Sentence.makeSentenceStrict(e.getKey());
+      Assert.assertEquals("Wrong result for " + goal, e.getValue(), prove.apply(goal));
+    });
+  }
+
+  /**
+   * Prove goal from premises, with or without trigger instantiation
+   *
+   * @return the number of instances made of universal quantifiers
+   */
+  private static long countInstances(Set<Sentence> premises, String goal, boolean validArgument, boolean triggers) {
+    FOLProver prover = new FOLProver(premises, Sentence.makeSentenceStrict(goal), false);
+    prover.setTriggerInstantiation(triggers);
+    prover.run();
+    Assert.assertEquals("Wrong result for " + goal, validArgument, !prover.isConsistent());
+    return prover.getInferenceList().stream().filter(i -> i instanceof UniversalInstantiation)
+            .mapToLong(i -> ((UniversalInstantiation) i).getInstanceVars().size()).sum();
+  }
+
+  /**
+   * Prove the valid argument from premises to goal twice, and check that every inference is made the same way both times
+   */
+  private static void assertDeterministic(Set<Sentence> premises, String goal) {
+    List<List<String>> runs = new ArrayList<>();
+    for (int run = 0; run < 2; ++run) {
+      FOLProver prover = new FOLProver(premises, Sentence.makeSentenceStrict(goal), false);
+      prover.run();
+      Assert.assertFalse(prover.isConsistent());
+      runs.add(prover.getInferenceList().stream().map(i -> i.getClass().getSimpleName() + " " + i.getInferenceNum() + " "
+              + i.getJustificationNum() + " " + i.getOrigin()
+              + (i instanceof UniversalInstantiation ? " " + ((UniversalInstantiation) i).getInstanceVars() : ""))
+              .collect(Collectors.toList()));
+    }
+    Assert.assertEquals(runs.get(0), runs.get(1));
+  }
+
   @Test
   public void prob1a() {
     List<String> declarations = new ArrayList<>();
@@ -593,4 +654,404 @@ public class FOLTests {
     premises.add("(implies (exists x (and (C x) (D x))) (implies (exists y (and (D y) (exists z (B y z)))) (forAll x (F x))))");
     runProver(declarations, premises, "(forAll x (A x))", true);
   }
+
+  /**
+   * Goals proven concurrently against a KnowledgeBase should get the
+   * same results as goals proven from scratch.
+   */
+  @Test
+  public void knowledgeBaseTest() {
+    DeclarationParser.parseDeclaration("Boolean A Object");
+    DeclarationParser.parseDeclaration("Boolean B Object");
+    DeclarationParser.parseDeclaration("Boolean C Object");
+    DeclarationParser.parseDeclaration("Boolean P");
+    DeclarationParser.parseDeclaration("Boolean Q");
+    DeclarationParser.parseDeclaration("Object a");
+    DeclarationParser.parseDeclaration("Object b");
+
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (A x) (B x)))"));
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (B x) (C x)))"));
+    premises.add(Sentence.makeSentenceStrict("(and (A a) (implies P Q))"));
+    premises.add(Sentence.makeSentenceStrict("(or P (C b))"));
+    KnowledgeBase knowledgeBase = new KnowledgeBase(premises);
+
+    Map<String, Boolean> goals = new HashMap<>();
+    goals.put("(C a)", true);
+    goals.put("(forAll x (implies (A x) (C x)))", true);
+    goals.put("(or Q (C b))", true);
+    goals.put("(not (C a))", false);
+    goals.put("(A b)", false);
+    goals.put("Q", false);
+    assertResults(goals.entrySet().parallelStream(), knowledgeBase::isValid);
+    assertResults(goals.entrySet().parallelStream(), goal -> ProverUtils.isFOLValid(premises, goal));
+    Assert.assertTrue("Consistent premises were found inconsistent", knowledgeBase.isConsistent());
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Asserting and retracting premises incrementally should give the same
+   * results as checking each set of premises from scratch.
+   */
+  @Test
+  public void incrementalTest() {
+    DeclarationParser.parseDeclaration("Boolean A Object");
+    DeclarationParser.parseDeclaration("Boolean B Object");
+    DeclarationParser.parseDeclaration("Boolean P");
+    DeclarationParser.parseDeclaration("Boolean Q");
+    DeclarationParser.parseDeclaration("Object a");
+
+    Prover prover = new FOLProver(Collections.emptySet(), false);
+    prover.assertPremise(Sentence.makeSentenceStrict("(forAll x (implies (A x) (B x)))"));
+    prover.assertPremise(Sentence.makeSentenceStrict("(or P (A a))"));
+    Assert.assertTrue(prover.checkConsistency());
+
+    prover.push();
+    prover.assertPremise(Sentence.makeSentenceStrict("(not (B a))"));
+    Assert.assertTrue(prover.checkConsistency());
+    prover.push();
+    prover.assertPremise(Sentence.makeSentenceStrict("(implies P Q)"));
+    prover.assertPremise(Sentence.makeSentenceStrict("(not Q)"));
+    Assert.assertFalse(prover.checkConsistency());
+    prover.pop();
+    Assert.assertTrue(prover.checkConsistency());
+    prover.assertPremise(Sentence.makeSentenceStrict("(not P)"));
+    Assert.assertFalse(prover.checkConsistency());
+    prover.pop();
+
+    prover.assertPremise(Sentence.makeSentenceStrict("(not P)"));
+    Assert.assertTrue(prover.checkConsistency());
+    prover.assertPremise(Sentence.makeSentenceStrict("(not (B a))"));
+    Assert.assertFalse(prover.checkConsistency());
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Queries which reduce to the same problem should share a cached result.
+   */
+  @Test
+  public void resultCacheTest() {
+    DeclarationParser.parseDeclaration("Boolean A Object");
+    DeclarationParser.parseDeclaration("Boolean B Object");
+
+    Sentence s1 = Sentence.makeSentenceStrict("(forAll x (and (A x) (B x)))"),
+            s2 = Sentence.makeSentenceStrict("(and (forAll x (A x)) (forAll y (B y)))"),
+            s3 = Sentence.makeSentenceStrict("(exists x (not (A x)))");
+    ResultCache<List<Set<Sentence>>, Boolean> cache = ProverUtils.getResultCache();
+    cache.clear();
+
+    Assert.assertTrue(ProverUtils.isFOLEquivalent(s1, s2));
+    Assert.assertEquals(3, cache.getMisses());
+    Assert.assertTrue(ProverUtils.isFOLEquivalent(s2, s1));
+    Assert.assertTrue(ProverUtils.isFOLValid(Collections.singleton(s2), s1));
+    Assert.assertEquals(2, cache.getHits());
+
+    Assert.assertTrue(ProverUtils.isFOLContrary(s1, s3));
+    Assert.assertTrue(ProverUtils.isFOLContrary(s3, s1));
+    Assert.assertFalse(ProverUtils.isFOLConsistent(new HashSet<>(Arrays.asList(s3, s1))));
+    Assert.assertEquals(4, cache.getHits());
+    Assert.assertEquals(4, cache.getMisses());
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * The winning strategy of a PortfolioProver should give the same verdict
+   * as the FOLProver alone.
+   */
+  @Test
+  public void portfolioTest() {
+    DeclarationParser.parseDeclaration("Boolean A Object");
+    DeclarationParser.parseDeclaration("Boolean B Object");
+    DeclarationParser.parseDeclaration("Boolean R Object Object");
+    DeclarationParser.parseDeclaration("Object a");
+
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (A x) (B x)))"));
+    premises.add(Sentence.makeSentenceStrict("(exists x (A x))"));
+    premises.add(Sentence.makeSentenceStrict("(exists y (R a y))"));
+
+    Map<String, Boolean> goals = new LinkedHashMap<>();
+    goals.put("(exists x (exists y (R y x)))", true);
+    goals.put("(exists x (B x))", true);
+    goals.put("(forAll x (B x))", false);
+    goals.put("(B a)", false);
+    assertResults(goals.entrySet().stream(), goal -> {
+      PortfolioProver prover = new PortfolioProver(premises, Collections.singleton(goal));
+      prover.run();
+      Assert.assertTrue("No strategy finished " + goal, prover.finishedProof());
+      return !prover.isConsistent();
+    });
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * A bound on the rounds of quantifier instantiation should stop proofs over
+   * infinite models, without changing the results of proofs finished within it.
+   */
+  @Test
+  public void roundBoundTest() {
+    DeclarationParser.parseDeclaration("Boolean A Object");
+    DeclarationParser.parseDeclaration("Boolean R Object Object");
+    DeclarationParser.parseDeclaration("Object a");
+
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(forAll x (exists y (R x y)))"));
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (R a x) (A x)))"));
+
+    Assert.assertEquals(true, ProverUtils.isFOLValid(premises, Sentence.makeSentenceStrict("(exists x (A x))"), 3));
+    Assert.assertNull(ProverUtils.isFOLValid(premises, Sentence.makeSentenceStrict("(A a)"), 2));
+
+    FOLProver prover = new FOLProver(Collections.singleton(Sentence.makeSentenceStrict("(forAll x (exists y (R x y)))")),
+            Sentence.makeSentenceStrict("(R a a)"), false);
+    prover.setRoundBound(3);
+    prover.run();
+    Assert.assertTrue(prover.reachedBound());
+    Assert.assertEquals(3, prover.getRounds());
+    prover.setRoundBound(4);
+    prover.run();
+    Assert.assertTrue(prover.reachedBound());
+    Assert.assertEquals(4, prover.getRounds());
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Trigger instantiation should prove the same goals as exhaustive instantiation,
+   * without instantiating universals with irrelevant constants.
+   */
+  @Test
+  public void triggerInstantiationTest() {
+    for (String p : Arrays.asList("A", "B", "C", "D", "E"))
+      DeclarationParser.parseDeclaration("Boolean " + p + " Object");
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (A x) (B x)))"));
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (B x) (C x)))"));
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (D x) (E x)))"));
+    DeclarationParser.parseDeclaration("Object c0");
+    premises.add(Sentence.makeSentenceStrict("(A c0)"));
+    for (int i = 1; i < 10; ++i) {
+      DeclarationParser.parseDeclaration("Object c" + i);
+      premises.add(Sentence.makeSentenceStrict("(D c" + i + ")"));
+    }
+
+    for (boolean triggers : Arrays.asList(false, true)) {
+      countInstances(premises, "(E c1)", true, triggers);
+      countInstances(premises, "(C c1)", false, triggers);
+    }
+    Assert.assertTrue(countInstances(premises, "(C c0)", true, true) < countInstances(premises, "(C c0)", true, false));
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Function terms should trigger instances as atoms do.
+   */
+  @Test
+  public void functionTriggerTest() {
+    DeclarationParser.parseDeclaration("Boolean A Object");
+    DeclarationParser.parseDeclaration("Boolean B Object");
+    DeclarationParser.parseDeclaration("Object f Object");
+    DeclarationParser.parseDeclaration("Object g Object");
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (A (f x)) (B (f x))))"));
+    for (int i = 0; i < 10; ++i) {
+      DeclarationParser.parseDeclaration("Object c" + i);
+      premises.add(Sentence.makeSentenceStrict("(A (g c" + i + "))"));
+    }
+    premises.add(Sentence.makeSentenceStrict("(A (f c0))"));
+
+    Assert.assertTrue(countInstances(premises, "(B (f c0))", true, true) < countInstances(premises, "(B (f c0))", true, false));
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Instances are built in parallel, but every inference should be numbered the same in every run.
+   */
+  @Test
+  public void deterministicInstantiationTest() {
+    for (String p : Arrays.asList("A", "B", "C", "D"))
+      DeclarationParser.parseDeclaration("Boolean " + p + " Object");
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (A x) (B x)))"));
+    premises.add(Sentence.makeSentenceStrict("(forAll x (implies (B x) (C x)))"));
+    premises.add(Sentence.makeSentenceStrict("(forAll x (or (D x) (A x)))"));
+    for (int i = 0; i < 8; ++i)
+      DeclarationParser.parseDeclaration("Object c" + i);
+    premises.add(Sentence.makeSentenceStrict("(or (A c0) (A c1))"));
+
+    assertDeterministic(premises, "(or (C c0) (C c1))");
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Universals mapped in disjoint branches are instantiated in one task per branch, and should
+   * still be inferred and numbered the same in every run.
+   */
+  @Test
+  public void subtreeInstantiationTest() {
+    for (String p : Arrays.asList("A", "B", "C"))
+      DeclarationParser.parseDeclaration("Boolean " + p + " Object");
+    Set<Sentence> premises = new HashSet<>();
+    for (int i = 0; i < 4; ++i) {
+      DeclarationParser.parseDeclaration("Object c" + i);
+      premises.add(Sentence.makeSentenceStrict("(A c" + i + ")"));
+    }
+    premises.add(Sentence.makeSentenceStrict("(or (forAll x (implies (A x) (B x))) (forAll x (implies (A x) (C x))))"));
+
+    assertDeterministic(premises, "(or (B c3) (C c3))");
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Skolemizing should name one witness per universal instance, so that a consistent
+   * argument which would otherwise mint constants forever ends with a truncated term.
+   */
+  @Test
+  public void skolemizationTest() {
+    DeclarationParser.parseDeclaration("Boolean A Object");
+    DeclarationParser.parseDeclaration("Boolean R Object Object");
+    DeclarationParser.parseDeclaration("Object a");
+
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(forAll x (exists y (R x y)))"));
+    premises.add(Sentence.makeSentenceStrict("(forAll x (forAll y (implies (R x y) (A y))))"));
+
+    Preprocessor preprocessor = new Preprocessor();
+    preprocessor.setSkolemization(2);
+    Sentence skolemized = preprocessor.normalize(Sentence.makeSentenceStrict("(forAll x (exists y (R x y)))"));
+    Assert.assertFalse(skolemized.getSubSentences().anyMatch(s -> s instanceof Exists));
+    Assert.assertTrue(skolemized.getSubSentences().anyMatch(s -> s instanceof SkolemFunction));
+
+    FOLProver prover = new FOLProver(premises, Collections.singleton(Sentence.makeSentenceStrict("(exists z (A z))")), false, preprocessor);
+    prover.run();
+    Assert.assertTrue(prover.finishedProof());
+    Assert.assertFalse(prover.isConsistent());
+
+    prover = new FOLProver(premises, Collections.singleton(Sentence.makeSentenceStrict("(R a a)")), false, preprocessor);
+    prover.run();
+    Assert.assertTrue(prover.isTruncated());
+    Assert.assertFalse(prover.finishedProof());
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Equal terms should be substitutable without equality axioms, including inside functions.
+   */
+  @Test
+  public void equalityTest() {
+    DeclarationParser.parseDeclaration("Boolean P Object");
+    DeclarationParser.parseDeclaration("Object f Object");
+    for (String c : Arrays.asList("a", "b", "c"))
+      DeclarationParser.parseDeclaration("Object " + c);
+
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(= a b)"));
+    premises.add(Sentence.makeSentenceStrict("(or (= b c) (P c))"));
+    premises.add(Sentence.makeSentenceStrict("(P (f a))"));
+
+    Map<String, Boolean> goals = new LinkedHashMap<>();
+    goals.put("(P (f b))", true);
+    goals.put("(= (f a) (f b))", true);
+    goals.put("(or (P a) (P c))", false);
+    goals.put("(or (= a c) (P c))", true);
+    goals.put("(= a c)", false);
+    assertResults(goals.entrySet().stream(), goal -> {
+      Prover prover = new FOLProver(premises, goal, false);
+      prover.run();
+      Assert.assertTrue(prover.finishedProof());
+      return !prover.isConsistent();
+    });
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * The closure under equality is kept between checks, so Identities and atoms asserted later
+   * should still be combined with those of the branches already built.
+   */
+  @Test
+  public void incrementalEqualityTest() {
+    DeclarationParser.parseDeclaration("Boolean P Object");
+    DeclarationParser.parseDeclaration("Object f Object");
+    for (String c : Arrays.asList("a", "b", "c"))
+      DeclarationParser.parseDeclaration("Object " + c);
+
+    Prover prover = new FOLProver(Collections.emptySet(), false);
+    prover.assertPremise(Sentence.makeSentenceStrict("(P (f a))"));
+    prover.assertPremise(Sentence.makeSentenceStrict("(or (= a b) (= a c))"));
+    Assert.assertTrue(prover.checkConsistency());
+    prover.push();
+    prover.assertPremise(Sentence.makeSentenceStrict("(not (P (f c)))"));
+    Assert.assertTrue(prover.checkConsistency());
+    prover.pop();
+
+    prover.assertPremise(Sentence.makeSentenceStrict("(not (P (f b)))"));
+    Assert.assertTrue(prover.checkConsistency());
+    prover.assertPremise(Sentence.makeSentenceStrict("(= b c)"));
+    Assert.assertFalse(prover.checkConsistency());
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * The atoms and function terms of a branch should be found by their names.
+   */
+  @Test
+  public void termIndexTest() {
+    DeclarationParser.parseDeclaration("declare-sort Man Object");
+    DeclarationParser.parseDeclaration("Boolean P Object");
+    DeclarationParser.parseDeclaration("Man f Object");
+    DeclarationParser.parseDeclaration("Object g Object");
+    DeclarationParser.parseDeclaration("Object a");
+
+    Set<Sentence> premises = new HashSet<>();
+    premises.add(Sentence.makeSentenceStrict("(and (P (f a)) (P (g (f a))))"));
+    premises.add(Sentence.makeSentenceStrict("(forAll x (P x))"));
+    Prover prover = new Prover(premises, Collections.emptySet(), false);
+    prover.run();
+
+    TruthAssignment h = prover.getTruthAssignment();
+    Assert.assertEquals(2, h.getAtoms("P").count());
+    Assert.assertEquals(Collections.singletonList(Sentence.makeSentenceStrict("(f a)")),
+            h.getTerms("f").collect(Collectors.toList()));
+    Assert.assertEquals(Sort.getSort("Man"), h.getTerms("f").findAny().get().getSort());
+    Assert.assertEquals(1, h.getTerms("g").count());
+    Assert.assertEquals(0, h.getTerms("h").count());
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Closing a branch should drop the quantifiers waiting in it from the agenda, and a universal
+   * should only be offered again once a new constant reaches it.
+   */
+  @Test
+  public void agendaTest() {
+    DeclarationParser.parseDeclaration("Boolean A");
+    DeclarationParser.parseDeclaration("Boolean P Object");
+    DeclarationParser.parseDeclaration("Object a");
+    Sentence forAll = Sentence.makeSentenceStrict("(forAll x (P x))"), a = Sentence.makeSentenceStrict("A");
+    TruthAssignment root = new TruthAssignment(), left = new TruthAssignment(new TruthAssignment(), root),
+            right = new TruthAssignment(new TruthAssignment(), root);
+    left.setTrue(forAll, 0);
+    left.setTrue(a, 0);
+    left.setFalse(a, 0);
+    right.setTrue(forAll, 0);
+
+    FOLProver prover = new FOLProver(root);
+    prover.openBranches = new ArrayList<>(Arrays.asList(left, right));
+    prover.agenda = new QuantifierAgenda((p1, p2) -> 0);
+    Pair l = Pair.makePair(forAll, left), r = Pair.makePair(forAll, right);
+    Assert.assertTrue(prover.agenda.add(l));
+    Assert.assertTrue(prover.agenda.add(r));
+    root.pollReopenedUniversals();
+
+    prover.closeBranches();
+    Assert.assertEquals(Collections.singletonList(right), prover.openBranches);
+    Assert.assertFalse(prover.agenda.contains(l));
+    Assert.assertFalse(prover.agenda.add(l));
+    Assert.assertEquals(r, prover.agenda.poll());
+    Assert.assertTrue(prover.agenda.isEmpty());
+
+    Assert.assertTrue(root.pollReopenedUniversals().isEmpty());
+    right.addConstant(Sentence.makeSentenceStrict("a"));
+    Assert.assertEquals(Collections.singletonList(r), root.pollReopenedUniversals());
+    Assert.assertTrue(root.pollReopenedUniversals().isEmpty());
+    Sentence.clearDeclarations();
+  }
 }
@@ -0,0 +1,90 @@
+package logicalreasoner.prover;
+
+import expression.sentence.Sentence;
+import logicalreasoner.inference.Branch;
+import logicalreasoner.inference.Inference;
+import logicalreasoner.truthassignment.TruthAssignment;
+
+import java.util.*;
+
+/**
+ * A KnowledgeBase decomposes a fixed set of premises once, so that many goals
+ * can be proven against them without repeating that work. Every Decomposition
+ * of the premises is applied to a single root TruthAssignment (the prefix),
+ * while Sentences which would branch are left undecomposed. Each goal is then
+ * proven by a FOLProver starting from a snapshot of the prefix.
+ * <p>
+ * The prefix is never modified once the KnowledgeBase has been created, so
+ * goals may be proven from many threads at once.
+ */
+public class KnowledgeBase {
+  private final Set<Sentence> premises;
+  private final TruthAssignment prefix;
+  private final List<Inference> inferences;
+  private final int inferenceCount;
+
+  /**
+   * Decompose the given premises
+   *
+   * @param premises the prior knowledge shared by all goals
+   */
+  public KnowledgeBase(Set<Sentence> premises) {
+    this.premises = Collections.unmodifiableSet(new HashSet<>(premises));
+    Prover prover = new Prover(this.premises, Collections.emptySet(), false);
+    prover.applyDecompositions();
+
+    prefix = prover.getTruthAssignment();
+    for (Branch b : prover.getBranchQueue())   // Left for each goal to branch on
+      prefix.setUndecomposed(b.getOrigin());
+    inferences = Collections.unmodifiableList(prover.getInferenceList());
+    inferenceCount = prover.getInferenceCount();
+  }
+
+  public Set<Sentence> getPremises() {
+    return premises;
+  }
+
+  /**
+   * @return a copy of the decomposed premises, which may be freely extended
+   */
+  public TruthAssignment getPrefix() {
+    return prefix.snapshot();
+  }
+
+  /**
+   * @return the Decompositions made to the premises
+   */
+  public List<Inference> getInferences() {
+    return inferences;
+  }
+
+  /**
+   * @return the UID of the next inference made over the premises
+   */
+  public int getInferenceCount() {
+    return inferenceCount;
+  }
+
+  /**
+   * Test whether the premises logically imply the goal
+   *
+   * @param goal the Sentence to prove
+   * @return true if the argument is valid, false otherwise
+   */
+  public boolean isValid(Sentence goal) {
+    Prover prover = new FOLProver(this, Collections.singleton(goal), false);
+    prover.run();
+    return !prover.isConsistent();
+  }
+
+  /**
+   * Test whether the premises are consistent
+   *
+   * @return true if all premises can be true at the same time
+   */
+  public boolean isConsistent() {
+    Prover prover = new FOLProver(this, Collections.emptySet(), false);
+    prover.run();
+    return prover.isConsistent();
+  }
+}
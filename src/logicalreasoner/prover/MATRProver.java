@@ -3,7 +3,9 @@ package logicalreasoner.prover;
 import expression.sentence.Sentence;
 import logicalreasoner.inference.*;
 import logicalreasoner.truthassignment.Pair;
+import logicalreasoner.truthassignment.TruthAssignment;
 
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -29,6 +31,10 @@ public class MATRProver extends FOLProver {
     super(premises, goal, print, runTime);
   }
 
+  public MATRProver(Set<Sentence> premises, Set<Sentence> goals, boolean print) {
+    super(premises, goals, print);
+  }
+
   @Override
   public Stream<Pair> infer(Inference i) {
     if (i instanceof ExistentialInstantiation) {
@@ -46,6 +52,7 @@ public class MATRProver extends FOLProver {
    * Create inferences for every closed branch
    */
   public void closeBranches() {
+    List<TruthAssignment> open = openBranches;
     openBranches = openBranches.parallelStream().map(h -> {
       if (h.areParentsConsistent())
         return h;
@@ -57,5 +64,7 @@ public class MATRProver extends FOLProver {
       ++inferenceCount;
       return null;
     }).filter(h -> h != null).collect(Collectors.toList());
+    if (openBranches.size() < open.size())
+      closed(open.stream().filter(h -> !openBranches.contains(h)).collect(Collectors.toList()));
   }
 }
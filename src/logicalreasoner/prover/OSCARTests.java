@@ -12,8 +12,28 @@ import java.util.Set;
  */
 public class OSCARTests {
 
-  private static void runProver(List<String> d, Set<String> p, String s, boolean b) {
-    FOLTests.runProver(d, p, s, b);
+  //The Preprocessor the problems are rewritten with (null for none)
+  private Preprocessor preprocessor = null;
+
+  private void runProver(List<String> d, Set<String> p, String s, boolean b) {
+    FOLTests.runProver(d, p, s, b, preprocessor);
+  }
+
+  /**
+   * Quantifiers the Preprocessor moves into different branches must still be instantiated with every
+   * constant, and skolemizing their existentials must not change the verdict
+   */
+  @Test
+  public void preprocessedProblems() {
+    Preprocessor skolemizing = new Preprocessor();
+    skolemizing.setSkolemization(2);
+    for (Preprocessor p : new Preprocessor[]{new Preprocessor(), new Preprocessor(true), skolemizing}) {
+      preprocessor = p;
+      prob78c();
+      prob80c();
+      prob81c();
+      prob82c();
+    }
   }
 
   @Test
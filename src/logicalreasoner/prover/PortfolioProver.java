@@ -0,0 +1,130 @@
+package logicalreasoner.prover;
+
+import expression.sentence.Exists;
+import expression.sentence.Sentence;
+import logicalreasoner.inference.Branch;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
+/**
+ * The PortfolioProver class races several prover strategies over the same argument,
+ * each on its own thread. The first strategy to finish its proof gives the verdict,
+ * and every other strategy is cancelled.
+ * <p>
+ * A strategy builds a Prover from the premises and goals. The default strategies are
+ * the FOLProver, the MATRProver, and an FOLProver which branches on the smallest
+ * Branch first and instantiates larger quantifiers first.
+ */
+public class PortfolioProver implements Runnable {
+  private final Set<Sentence> premises, goals;
+  private final Map<String, BiFunction<Set<Sentence>, Set<Sentence>, Prover>> strategies;
+  private String winner;
+  private Prover winningProver;
+
+  /**
+   * @return the default strategies, by name
+   */
+  public static Map<String, BiFunction<Set<Sentence>, Set<Sentence>, Prover>> defaultStrategies() {
+    Map<String, BiFunction<Set<Sentence>, Set<Sentence>, Prover>> strategies = new LinkedHashMap<>();
+    strategies.put("FOLProver", (p, g) -> new FOLProver(p, g, false));
+    strategies.put("MATRProver", (p, g) -> new MATRProver(p, g, false));
+    strategies.put("FOLProver (smallest branch first)", (p, g) -> {
+      FOLProver prover = new FOLProver(p, g, false);
+      prover.setBranchComparator(Comparator.<Branch>reverseOrder()
+              .thenComparing(Comparator.comparingInt(Branch::getInferenceNum).reversed()));
+      prover.setQuantifierComparator(Comparator.comparing((Sentence s) -> !(s instanceof Exists))
+              .thenComparing(Comparator.comparingInt(Sentence::atomCount).reversed()));
+      return prover;
+    });
+    return strategies;
+  }
+
+  /**
+   * Race the default strategies
+   *
+   * @param premises the prior knowledge of the provers
+   * @param goals    the goals of the provers (to be negated)
+   */
+  public PortfolioProver(Set<Sentence> premises, Set<Sentence> goals) {
+    this(premises, goals, defaultStrategies());
+  }
+
+  /**
+   * @param premises   the prior knowledge of the provers
+   * @param goals      the goals of the provers (to be negated)
+   * @param strategies builds a Prover from the premises and goals, for each strategy name
+   */
+  public PortfolioProver(Set<Sentence> premises, Set<Sentence> goals,
+                         Map<String, BiFunction<Set<Sentence>, Set<Sentence>, Prover>> strategies) {
+    this.premises = new HashSet<>(premises);
+    this.goals = new HashSet<>(goals);
+    this.strategies = new LinkedHashMap<>(strategies);
+  }
+
+  /**
+   * Run every strategy until one of them finishes its proof, then cancel the rest.
+   * A strategy which throws an exception drops out of the race.
+   */
+  public void run() {
+    Map<Prover, String> names = new LinkedHashMap<>();
+    strategies.forEach((name, strategy) -> names.put(strategy.apply(premises, goals), name));
+
+    ExecutorService executor = Executors.newFixedThreadPool(names.size());
+    CompletionService<Prover> completion = new ExecutorCompletionService<>(executor);
+    names.keySet().forEach(prover -> completion.submit(() -> {
+      prover.run();
+      return prover;
+    }));
+
+    try {
+      for (int i = 0; i < names.size() && winningProver == null; ++i) {
+        try {
+          Prover prover = completion.take().get();
+          if (prover.finishedProof()) {
+            winningProver = prover;
+            winner = names.get(prover);
+          }
+        } catch (ExecutionException e) {
+          // Leave the race to the remaining strategies
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      names.keySet().forEach(Prover::cancel);
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return true if some strategy finished its proof
+   */
+  public boolean finishedProof() {
+    return winningProver != null;
+  }
+
+  /**
+   * @return true if the premises and negated goals are consistent, according to the winning strategy
+   */
+  public boolean isConsistent() {
+    if (winningProver == null)
+      throw new RuntimeException("No strategy finished its proof.");
+    return winningProver.isConsistent();
+  }
+
+  /**
+   * @return the name of the winning strategy, or null if none finished
+   */
+  public String getWinner() {
+    return winner;
+  }
+
+  /**
+   * @return the Prover of the winning strategy, or null if none finished
+   */
+  public Prover getWinningProver() {
+    return winningProver;
+  }
+}
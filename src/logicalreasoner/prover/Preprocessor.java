@@ -0,0 +1,281 @@
+package logicalreasoner.prover;
+
+import expression.sentence.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The Preprocessor rewrites Sentences into a flattened negation normal form
+ * before they are given to a Prover, so that the tableau does not spend
+ * Decompositions on double negations, implications, negated quantifiers
+ * and nested conjunctions or disjunctions.
+ * <p>
+ * Negations are pushed down to the atoms, implies is rewritten as or,
+ * nested and/or arguments are flattened into their parents, duplicate
+ * arguments are removed, and BooleanSentence.TRUE/FALSE are simplified away.
+ * Iff is kept (rewriting it would duplicate both of its arguments), with a
+ * negated Iff (not (iff A B)) becoming (iff A (not B)).
+ * <p>
+ * Optionally, compound arguments of Iffs are replaced by fresh Propositions
+ * (Tseitin-style definitions), returned with the subformulas they name by
+ * getDefinitions. Repeated occurrences of a subformula and of its negation
+ * (which are different Sentences in negation normal form) then share a single
+ * name, so the subformula is decomposed at most once per branch.
+ * <p>
+ * Optionally, existential quantifiers under universal quantifiers are skolemized:
+ * the existential variable is replaced by a SkolemFunction of the universal variables
+ * it depends on. Every instance of the universal then names its own witness, instead
+ * of an existential being instantiated with a new constant in every branch. Goals are
+ * skolemized as they are assumed, i.e. false.
+ * <p>
+ * Every normalized Sentence remembers the original Sentence it was produced from,
+ * so that proof output can be reported in terms of the original argument.
+ */
+public class Preprocessor {
+  private static final String NOT = "not", AND = "and", OR = "or", IFF = "iff", FORALL = "forAll", EXISTS = "exists";
+
+  private Map<Sentence, Sentence> normalized, negated, originals, names;
+  private boolean introduceDefinitions;
+
+  //The maximum term depth of SkolemFunctions (0 if existentials are not skolemized)
+  private int skolemDepth = 0;
+
+  //The SkolemFunction term replacing each skolemized quantifier, by quantifier, polarity and universal variables
+  private Map<List<Object>, Sentence> skolemTerms = new HashMap<>();
+
+  public Preprocessor() {
+    this(false);
+  }
+
+  /**
+   * Create a new Preprocessor
+   *
+   * @param introduceDefinitions if true, name the compound arguments of Iffs with fresh Propositions
+   */
+  public Preprocessor(boolean introduceDefinitions) {
+    this.introduceDefinitions = introduceDefinitions;
+    normalized = new HashMap<>();
+    negated = new HashMap<>();
+    originals = new HashMap<>();
+    names = new LinkedHashMap<>();
+  }
+
+  /**
+   * Rewrite s into flattened negation normal form
+   *
+   * @param s the Sentence to normalize
+   * @return a Sentence equivalent to s in negation normal form
+   */
+  public Sentence normalize(Sentence s) {
+    Sentence n = skolemize(nnf(s, true), true, Collections.emptyList());
+    originals.putIfAbsent(n, s);
+    return n;
+  }
+
+  /**
+   * Rewrite a goal into flattened negation normal form. Goals differ from premises
+   * only when skolemizing, since a goal is assumed to be false.
+   *
+   * @param s the goal to normalize
+   * @return a Sentence whose negation is equisatisfiable with the negation of s
+   */
+  public Sentence normalizeGoal(Sentence s) {
+    Sentence n = skolemize(nnf(s, true), false, Collections.emptyList());
+    originals.putIfAbsent(n, s);
+    return n;
+  }
+
+  /**
+   * Skolemize the existential quantifiers which are under universal quantifiers
+   *
+   * @param maxDepth the maximum depth of SkolemFunction terms which quantifiers are instantiated with,
+   *                 or 0 to leave existentials as they are
+   */
+  public void setSkolemization(int maxDepth) {
+    skolemDepth = maxDepth;
+  }
+
+  public int getSkolemDepth() {
+    return skolemDepth;
+  }
+
+  /**
+   * Obtain the Sentence that a normalized Sentence was produced from
+   *
+   * @param s a Sentence returned by normalize
+   * @return the original Sentence, or s itself if it was not produced by this Preprocessor
+   */
+  public Sentence getOriginal(Sentence s) {
+    return originals.getOrDefault(s, s);
+  }
+
+  /**
+   * Obtain all Propositions introduced so far, along with the subformulas they name.
+   * A Prover using normalized Sentences must treat each name p and its subformula s as equivalent.
+   *
+   * @return a Map from each introduced Proposition to the subformula it names
+   */
+  public Map<Sentence, Sentence> getDefinitions() {
+    Map<Sentence, Sentence> definitions = new LinkedHashMap<>();
+    names.forEach((s, p) -> definitions.put(p, s));
+    return definitions;
+  }
+
+  /**
+   * Replace a normalized compound Sentence with the Proposition naming it
+   */
+  private Sentence name(Sentence s) {
+    if (!introduceDefinitions || s.isLiteral() || !s.getFreeVariables().isEmpty())
+      return s;
+    Sentence p = names.get(s);
+    if (p != null)
+      return p;
+    p = names.get(nnf(s, false));
+    if (p != null)
+      return Sentence.makeSentence(NOT, Collections.singletonList(p));
+
+    p = Proposition.getNewUniqueProposition();
+    names.put(s, p);
+    return p;
+  }
+
+  private Sentence nnf(Sentence s, boolean positive) {
+    Map<Sentence, Sentence> cache = positive ? normalized : negated;
+    Sentence n = cache.get(s);
+    if (n == null) {
+      n = rewrite(s, positive);
+      cache.put(s, n);
+    }
+    return n;
+  }
+
+  private Sentence rewrite(Sentence s, boolean positive) {
+    List<Sentence> args = s.getArgs();
+    if (s instanceof BooleanSentence)
+      return positive == (s == BooleanSentence.TRUE) ? BooleanSentence.TRUE : BooleanSentence.FALSE;
+    else if (s instanceof Not)
+      return nnf(args.get(0), !positive);
+    else if (s instanceof And)
+      return junction(positive ? AND : OR, nnf(args, positive));
+    else if (s instanceof Or)
+      return junction(positive ? OR : AND, nnf(args, positive));
+    else if (s instanceof Implies) {
+      List<Sentence> l = Arrays.asList(nnf(args.get(0), !positive), nnf(args.get(1), positive));
+      return junction(positive ? OR : AND, l);
+    } else if (s instanceof Iff)
+      return iff(nnf(args.get(0), true), args.get(1), positive);
+    else if (s instanceof ForAll || s instanceof Exists) {
+      boolean universal = (s instanceof ForAll) == positive;
+      Sentence body = nnf(args.get(1), positive);
+      if (body instanceof BooleanSentence)
+        return body;
+      return Sentence.makeSentence(universal ? FORALL : EXISTS, Arrays.asList(args.get(0), body));
+    }
+    return positive ? s : Sentence.makeSentence(NOT, Collections.singletonList(s));
+  }
+
+  /**
+   * Replace the quantifiers of a normalized Sentence which are existential when it has the given
+   * truth value, and which are in the scope of a universal quantifier, by SkolemFunction terms.
+   * The arguments of an Iff have both truth values, so they are left as they are.
+   *
+   * @param s          a Sentence in negation normal form
+   * @param asserted   the truth value that s will be assigned
+   * @param universals the universally quantified variables in scope, outermost first
+   */
+  private Sentence skolemize(Sentence s, boolean asserted, List<Variable> universals) {
+    if (skolemDepth < 1)
+      return s;
+    if (s instanceof And || s instanceof Or) {
+      List<Sentence> args = s.getArgs();
+      args.replaceAll(a -> skolemize(a, asserted, universals));
+      return args.equals(s.getArgs()) ? s : junction(s.getName(), args);
+    } else if (s instanceof ForAll || s instanceof Exists) {
+      Variable v = (Variable) s.getSubSentence(0);
+      Sentence body = s.getSubSentence(1);
+      if ((s instanceof ForAll) == asserted) {
+        List<Variable> inner = new ArrayList<>(universals);
+        inner.add(v);
+        return rebuild(s, skolemize(body, asserted, inner));
+      }
+
+      List<Variable> dependencies = universals.stream().filter(body.getFreeVariables()::contains).collect(Collectors.toList());
+      boolean captured = body.getSubSentences().anyMatch(q -> (q instanceof ForAll || q instanceof Exists)
+              && dependencies.contains(q.getSubSentence(0)));
+      if (dependencies.isEmpty() || captured)   // Instantiated only once, or the witness would be captured
+        return rebuild(s, skolemize(body, asserted, universals));
+
+      Sentence term = skolemTerms.computeIfAbsent(Arrays.asList(s, asserted, dependencies), k ->
+              Sentence.makeSentence(SkolemFunction.declare(v.getSort(),
+                      dependencies.stream().map(Sentence::getSort).collect(Collectors.toList()), skolemDepth),
+                      new ArrayList<>(dependencies)));
+      return skolemize(body.instantiate(term, v), asserted, universals);
+    }
+    return s;
+  }
+
+  /**
+   * Build a quantifier like q over a new body
+   */
+  private Sentence rebuild(Sentence q, Sentence body) {
+    if (body == q.getSubSentence(1))
+      return q;
+    return Sentence.makeSentence(q.getName(), Arrays.asList(q.getSubSentence(0), body));
+  }
+
+  private List<Sentence> nnf(List<Sentence> args, boolean positive) {
+    List<Sentence> l = new ArrayList<>(args.size());
+    args.forEach(a -> l.add(nnf(a, positive)));
+    return l;
+  }
+
+  /**
+   * Build (iff a b) if positive, or (iff a (not b)) otherwise,
+   * where a has already been normalized
+   */
+  private Sentence iff(Sentence a, Sentence b, boolean positive) {
+    Sentence nb = nnf(b, positive);
+    if (a == BooleanSentence.TRUE)
+      return nb;
+    if (a == BooleanSentence.FALSE)
+      return nnf(b, !positive);
+    if (nb == BooleanSentence.TRUE)
+      return a;
+    if (nb == BooleanSentence.FALSE)
+      return nnf(a, false);
+    if (a == nb)
+      return BooleanSentence.TRUE;
+    if (a == nnf(b, !positive))
+      return BooleanSentence.FALSE;
+    return Sentence.makeSentence(IFF, Arrays.asList(name(a), name(nb)));
+  }
+
+  /**
+   * Build a flattened, duplicate free and/or of the given normalized arguments
+   */
+  private Sentence junction(String name, List<Sentence> args) {
+    BooleanSentence unit = name.equals(AND) ? BooleanSentence.TRUE : BooleanSentence.FALSE,
+            zero = name.equals(AND) ? BooleanSentence.FALSE : BooleanSentence.TRUE;
+    Set<Sentence> flattened = new LinkedHashSet<>();
+    for (Sentence arg : args) {
+      if (arg.getName().equals(name))
+        flattened.addAll(arg.getArgs());
+      else if (arg != unit)
+        flattened.add(arg);
+    }
+
+    if (flattened.contains(zero))
+      return zero;
+    for (Sentence arg : flattened) {   // Complementary literals
+      if (arg instanceof Not && flattened.contains(arg.getSubSentence(0)))
+        return zero;
+    }
+
+    if (flattened.isEmpty())
+      return unit;
+    if (flattened.size() == 1)
+      return flattened.iterator().next();
+    return Sentence.makeSentence(name, new ArrayList<>(flattened));
+  }
+}
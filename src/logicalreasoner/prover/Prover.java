@@ -1,7 +1,8 @@
 package logicalreasoner.prover;
 
-import expression.sentence.Sentence;
+import expression.sentence.*;
 import logicalreasoner.inference.Branch;
+import logicalreasoner.inference.Closure;
 import logicalreasoner.inference.Decomposition;
 import logicalreasoner.inference.Inference;
 import logicalreasoner.truthassignment.Pair;
@@ -30,8 +31,17 @@ public class Prover implements Runnable {
   Long maxRuntime = null,
           startTime = null;
 
+  //Set by cancel (from any thread) to stop the proof at its next check
+  protected volatile boolean cancelled = false;
+
   protected Set<Sentence> premises, goals;
 
+  //Rewrites premises and goals before proving (null if disabled)
+  protected Preprocessor preprocessor;
+
+  //Propositions introduced by the preprocessor, mapped to the subformulas they name
+  protected Map<Sentence, Sentence> definitions;
+
   //Stores the initial/root TruthAssignment
   protected TruthAssignment masterFunction;
 
@@ -44,7 +54,28 @@ public class Prover implements Runnable {
 
   //Keep an ordered list of inferences for proof printing
   protected List<Inference> inferenceList;
-  protected boolean print, addedBranches, finishedProof, decomposeAll;
+  protected boolean print, addedBranches, finishedProof, decomposeAll, conflictAnalysis = true;
+
+  //The mappings which refuted the other children of Branches resolved by unit propagation
+  protected Map<Inference, List<Map.Entry<Sentence, Boolean>>> propagationReasons;
+
+  //Decompositions made by pure literal elimination, mapped to the leaf they were made in
+  protected Map<Inference, TruthAssignment> pureLiterals;
+
+  //Learned lemmas: sets of branching decisions found to be inconsistent with the premises, indexed by each of their decisions
+  protected Map<Map.Entry<Sentence, Boolean>, Set<Set<Map.Entry<Sentence, Boolean>>>> lemmas;
+
+  //The lemmas learned since the open leaves were last checked against them
+  protected List<Set<Map.Entry<Sentence, Boolean>>> newLemmas;
+
+  //Whether premises may be asserted after reasoning has begun, so that no choice may rely on them being final
+  protected boolean incremental = false;
+
+  //The Sentences of the root TruthAssignment which have been decomposed into Branches
+  protected Set<Sentence> rootBranches = new HashSet<>();
+
+  //The state saved by each push, restored by the matching pop
+  protected Deque<Level> levels = new ArrayDeque<>();
 
   protected Comparator<Branch> branchComparator = (b1, b2) -> {
     int i, j;
@@ -92,13 +123,32 @@ public class Prover implements Runnable {
    * @param print    Print log output if true
    */
   public Prover(Set<Sentence> premises, Set<Sentence> goals, boolean print) {
+    this(premises, goals, print, null);
+  }
+
+  /**
+   * Initialize the reasoner with the normalized premises and the negation of all normalized goals
+   *
+   * @param premises     the prior knowledge of the prover
+   * @param goals        the goals of the prover (to be negated)
+   * @param print        Print log output if true
+   * @param preprocessor the Preprocessor used to normalize premises and goals (or null, to use them as given)
+   */
+  public Prover(Set<Sentence> premises, Set<Sentence> goals, boolean print, Preprocessor preprocessor) {
+    this.preprocessor = preprocessor;
+    if (preprocessor != null) {
+      premises = premises.stream().map(preprocessor::normalize)
+              .filter(s -> s != BooleanSentence.TRUE).collect(Collectors.toSet());
+      goals = goals.stream().filter(Objects::nonNull).map(preprocessor::normalizeGoal).collect(Collectors.toSet());
+      definitions = preprocessor.getDefinitions();
+    } else
+      definitions = Collections.emptyMap();
     this.premises = new HashSet<>(premises);
 
     inferenceList = new ArrayList<>();
     inferenceCount = 1;
     masterFunction = new TruthAssignment();
     masterFunction.addConstants(Sentence.getAllConstants());
-    Decomposition c = new Decomposition(masterFunction, null, 0, 0);
     int premiseCount = -1;
 
     for (Sentence s : this.premises) {
@@ -108,6 +158,59 @@ public class Prover implements Runnable {
       inferenceList.add(p);
     }
 
+    // Definitions are never branched upon; each one is expanded by expandDefinitions once its name is assigned
+    for (Map.Entry<Sentence, Sentence> e : definitions.entrySet()) {
+      Sentence s = Sentence.makeSentence(Iff.NAME, Arrays.asList(e.getKey(), e.getValue()));
+      Decomposition p = new Decomposition(masterFunction, null, premiseCount, premiseCount--);
+      p.setTrue(s);
+      p.infer(masterFunction);
+      masterFunction.setDecomposed(s);
+      inferenceList.add(p);
+    }
+
+    addGoals(goals, print);
+  }
+
+  /**
+   * Initialize the reasoner with a copy of the decomposed premises of a KnowledgeBase
+   * and the negation of all goals
+   *
+   * @param knowledgeBase the prior knowledge of the prover
+   * @param goals         the goals of the prover (to be negated)
+   * @param print         Print log output if true
+   */
+  public Prover(KnowledgeBase knowledgeBase, Set<Sentence> goals, boolean print) {
+    this(knowledgeBase.getPremises(), Collections.emptyMap(), knowledgeBase.getPrefix(),
+            knowledgeBase.getInferences(), knowledgeBase.getInferenceCount(), goals, print);
+  }
+
+  /**
+   * Initialize the reasoner with already decomposed premises and the negation of all goals
+   *
+   * @param premises       the prior knowledge of the prover
+   * @param definitions    the Propositions introduced by a Preprocessor, mapped to the subformulas they name
+   * @param prefix         a root TruthAssignment holding the decomposed premises, which the prover takes ownership of
+   * @param inferences     the Decompositions made to the premises
+   * @param inferenceCount the UID of the next inference
+   * @param goals          the goals of the prover (to be negated)
+   * @param print          Print log output if true
+   */
+  protected Prover(Set<Sentence> premises, Map<Sentence, Sentence> definitions, TruthAssignment prefix,
+                   List<Inference> inferences, int inferenceCount, Set<Sentence> goals, boolean print) {
+    this.premises = new HashSet<>(premises);
+    this.definitions = definitions;
+    inferenceList = new ArrayList<>(inferences);
+    this.inferenceCount = inferenceCount;
+    masterFunction = prefix;
+    masterFunction.addConstants(Sentence.getAllConstants());
+    addGoals(new HashSet<>(goals), print);
+  }
+
+  /**
+   * Assign every goal false in the root TruthAssignment, and initialize the remaining state of the reasoner
+   */
+  private void addGoals(Set<Sentence> goals, boolean print) {
+    Decomposition c = new Decomposition(masterFunction, null, 0, 0);
     if (goals.contains(null))
       goals.removeIf(Objects::isNull);
     goals.forEach(c::setFalse);
@@ -120,6 +223,10 @@ public class Prover implements Runnable {
     openBranches.add(masterFunction);
 
     branchQueue = new ArrayList<>();
+    propagationReasons = new HashMap<>();
+    pureLiterals = new HashMap<>();
+    lemmas = new HashMap<>();
+    newLemmas = new ArrayList<>();
     this.print = print;
     addedBranches = false;
     finishedProof = false;
@@ -149,6 +256,7 @@ public class Prover implements Runnable {
     premises = truthAssignment.keySet().stream().filter(truthAssignment::models).collect(Collectors.toSet());
     goals = truthAssignment.keySet().stream().filter(s -> !truthAssignment.models(s)).collect(Collectors.toSet());
 
+    definitions = Collections.emptyMap();
     masterFunction = truthAssignment;
     inferenceList = new CopyOnWriteArrayList<>();
     inferenceCount = 1;
@@ -157,6 +265,10 @@ public class Prover implements Runnable {
     openBranches.add(masterFunction);
 
     branchQueue = new ArrayList<>();
+    propagationReasons = new HashMap<>();
+    pureLiterals = new HashMap<>();
+    lemmas = new HashMap<>();
+    newLemmas = new ArrayList<>();
     print = false;
     addedBranches = false;
     finishedProof = false;
@@ -176,9 +288,25 @@ public class Prover implements Runnable {
    * @return true if changes to h have been made as a result of this call, false otherwise
    */
   public Stream<Inference> reason(TruthAssignment h, boolean overQuantifiers) {
-    return h.flattenUndecomposedSerial()
+    return reason(h, getUndecomposed(h, overQuantifiers), overQuantifiers);
+  }
+
+  /**
+   * @return the undecomposed Sentences in h which are (or are not) quantified
+   */
+  protected List<Pair> getUndecomposed(TruthAssignment h, boolean overQuantifiers) {
+    return h.flattenUndecomposedSerial().filter(p -> p.sentence.isQuantifier() == overQuantifiers)
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * Decompose the undecomposed Sentences found in h, skipping any decomposed since they were found.
+   * Inferences are numbered in the order of the Sentences, so this must not be called concurrently.
+   */
+  protected Stream<Inference> reason(TruthAssignment h, List<Pair> undecomposed, boolean overQuantifiers) {
+    Stream<Inference> s = undecomposed.stream()
             .map(p -> {
-              if (p.sentence.isQuantifier() != overQuantifiers)
+              if (p.truthAssignment.isDecomposed(p.sentence))   // Through another branch
                 return null;
               Inference i = p.sentence.reason(p.truthAssignment, inferenceCount,
                       p.truthAssignment.getInferenceNum(p.sentence, p.truthAssignment.models(p.sentence)));
@@ -186,6 +314,47 @@ public class Prover implements Runnable {
                 ++inferenceCount;
               return i;
             });
+    return overQuantifiers || definitions.isEmpty() ? s : Stream.concat(s, expandDefinitions(h));
+  }
+
+  /**
+   * Give each introduced Proposition and the subformula it names the same value in the leaf h,
+   * whenever one of them has been assigned a value the other does not have
+   *
+   * @param h the leaf to expand definitions in
+   * @return a Decomposition for each definition which was expanded
+   */
+  protected Stream<Inference> expandDefinitions(TruthAssignment h) {
+    return definitions.entrySet().stream().map(e -> {
+      Sentence name = e.getKey(), s = e.getValue(), from, to;
+      if (h.isMapped(name) && !h.hasMapping(s, h.models(name))) {
+        from = name;
+        to = s;
+      } else if (h.isMapped(s) && !h.hasMapping(name, h.models(s))) {
+        from = s;
+        to = name;
+      } else
+        return null;
+
+      boolean value = h.models(from);
+      Decomposition d = new Decomposition(h, Sentence.makeSentence(Iff.NAME, Arrays.asList(name, s)),
+              inferenceCount++, h.getInferenceNum(from, value));
+      if (value)
+        d.setTrue(to);
+      else
+        d.setFalse(to);
+      return d;
+    });
+  }
+
+  /**
+   * Check whether some definition still has to be expanded in the leaf h
+   *
+   * @param h the leaf to check
+   * @return true if an introduced Proposition and the subformula it names have different values in h
+   */
+  protected boolean hasPendingDefinitions(TruthAssignment h) {
+    return definitions.entrySet().stream().anyMatch(e -> !Objects.equals(h.models(e.getKey()), h.models(e.getValue())));
   }
 
   public Stream<Pair> infer(Inference i) {
@@ -193,8 +362,13 @@ public class Prover implements Runnable {
       return Stream.empty();
     if (i instanceof Decomposition) {
       inferenceList.add(i);
-      return i.infer(i.getParent());
+      List<Pair> pairs = i.infer(i.getParent()).collect(Collectors.toList());
+      mapped(pairs.stream());
+      return pairs.stream();
     } else if (i instanceof Branch) {
+      if (i.getParent() == masterFunction)
+        rootBranches.add(i.getOrigin());
+      ((Branch) i).removeRedundantBranches();
       branchQueue.add((Branch) i);
       addedBranches = true;
     }
@@ -209,6 +383,8 @@ public class Prover implements Runnable {
 
     printArgument();
     runPropositionally();
+    if (isStopped())
+      return;
     finishedProof = true;
     printResult();
   }
@@ -216,21 +392,19 @@ public class Prover implements Runnable {
   public void runPropositionally() {
     while (!propositionalReasoningCompleted()) {  // Reason propositionally while possible
 
-      if (maxRuntime != null && (System.currentTimeMillis() - startTime) >= maxRuntime)
+      if (isStopped())
         return;
 
-      boolean updated = true;
-      int i = inferenceList.size();
       // Always decompose all statements before branching
-      while (updated && !openBranches.isEmpty()) {
-        openBranches.parallelStream().flatMap(b -> reason(b, false)).collect(Collectors.toList()).forEach(this::infer);
+      applyDecompositions();
+      closeBranches();
 
-        updated = i != inferenceList.size();
-        i = inferenceList.size();
+      //Resolve forced branches without splitting, and decompose their results before branching
+      if (!openBranches.isEmpty() && !branchQueue.isEmpty() && propagate()) {
+        closeBranches();
+        continue;
       }
 
-      closeBranches();
-
       //Branch once on the largest branching statement then loop back around
       if (!openBranches.isEmpty() && !branchQueue.isEmpty())
         addBranches();
@@ -248,19 +422,73 @@ public class Prover implements Runnable {
     //printBranches();
   }
 
+  /**
+   * Reason over every open branch until no more Decompositions can be made,
+   * queueing (but not applying) any Branches found. The open branches are searched
+   * for undecomposed Sentences in parallel, and their Inferences are made serially
+   * in the order of the branches, so that they are numbered the same in every run.
+   */
+  protected void applyDecompositions() {
+    boolean updated = true;
+    int i = inferenceList.size();
+    while (updated && !openBranches.isEmpty()) {
+      List<List<Pair>> undecomposed = openBranches.parallelStream().map(b -> getUndecomposed(b, false))
+              .collect(Collectors.toList());
+      List<Inference> inferences = new ArrayList<>();
+      for (int b = 0; b < openBranches.size(); ++b)
+        reason(openBranches.get(b), undecomposed.get(b), false).forEach(inferences::add);
+      inferences.forEach(this::infer);
+
+      updated = i != inferenceList.size();
+      i = inferenceList.size();
+    }
+  }
+
   /**
    * Check if all TruthAssignments are consistent and fully decomposed.
    *
    * @return true if all open branches are fully decomposed
    */
   public boolean reasoningCompleted() {
-    return openBranches.isEmpty() || (branchQueue.isEmpty() && openBranches.parallelStream().allMatch(TruthAssignment::decomposedAll));
+    return openBranches.isEmpty() || (branchQueue.isEmpty() && openBranches.parallelStream().allMatch(h -> h.decomposedAll() && !hasPendingDefinitions(h)));
   }
 
   public boolean finishedProof() {
     return finishedProof;
   }
 
+  /**
+   * Stop the proof at its next check, leaving it unfinished. May be called from any thread
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * @return true if the proof has been cancelled or has run out of time
+   */
+  protected boolean isStopped() {
+    return cancelled || maxRuntime != null && (System.currentTimeMillis() - startTime) >= maxRuntime;
+  }
+
+  /**
+   * Replace the heuristic ordering the branchQueue (the last Branch in the order is branched on first)
+   *
+   * @param branchComparator the new ordering of Branches
+   */
+  public void setBranchComparator(Comparator<Branch> branchComparator) {
+    this.branchComparator = branchComparator;
+  }
+
+  /**
+   * Enable or disable backjumping and lemma learning when branches close
+   *
+   * @param conflictAnalysis true to trace conflicts back to their decisions (the default)
+   */
+  public void setConflictAnalysis(boolean conflictAnalysis) {
+    this.conflictAnalysis = conflictAnalysis;
+  }
+
 
   /**
    * Check if all TruthAssignments are consistent and  all propositions have been fully decomposed.
@@ -268,13 +496,103 @@ public class Prover implements Runnable {
    * @return true if all open branches are fully decomposed
    */
   protected boolean propositionalReasoningCompleted() {
-    return openBranches.isEmpty() || (branchQueue.isEmpty() && openBranches.parallelStream().allMatch(TruthAssignment::decomposedAllPropositions));
+    return openBranches.isEmpty() || (branchQueue.isEmpty() && openBranches.parallelStream().allMatch(h -> h.decomposedAllPropositions() && !hasPendingDefinitions(h)));
   }
 
   public boolean isConsistent() {
     return !openBranches.isEmpty() && masterFunction.isConsistent();
   }
 
+  /**
+   * Save the premises asserted so far, so that every premise asserted after this call
+   * (and all of its decompositions) is retracted by the matching pop. The new level starts
+   * from a snapshot of the root TruthAssignment, in which the Sentences that were branched
+   * on are left to be decomposed again.
+   */
+  public void push() {
+    levels.push(new Level(this));
+    TruthAssignment root = masterFunction.snapshot();
+    rootBranches.forEach(root::setUndecomposed);   // Their branches are not part of the snapshot
+    masterFunction = root;
+    rootBranches = new HashSet<>();
+    branchQueue = new ArrayList<>();
+    openBranches = new CopyOnWriteArrayList<>(Collections.singletonList(masterFunction));
+    newLemmas.clear();
+  }
+
+  /**
+   * Retract every premise asserted since the last push, and return to the tree reasoned over
+   * before it, with the open leaves it had then
+   */
+  public void pop() {
+    if (levels.isEmpty())
+      throw new RuntimeException("Cannot pop without a matching push.");
+    Level level = levels.pop();
+    premises = level.premises;
+    definitions = level.definitions;
+    masterFunction = level.root;
+    rootBranches = level.rootBranches;
+    branchQueue = level.branchQueue;
+    openBranches = level.openBranches;
+    lemmas = level.lemmas;
+    newLemmas.clear();
+    inferenceList = new ArrayList<>(inferenceList.subList(0, level.inferences));
+    inferenceCount = level.inferenceCount;
+  }
+
+  /**
+   * Add s to the premises, and apply every Decomposition it makes possible to the open leaves
+   * of the current tree. Sentences which would branch are only queued; branching is left to
+   * checkConsistency.
+   *
+   * @param s the premise to assert
+   */
+  public void assertPremise(Sentence s) {
+    incremental = true;
+    if (preprocessor != null) {
+      s = preprocessor.normalize(s);
+      for (Map.Entry<Sentence, Sentence> e : preprocessor.getDefinitions().entrySet())
+        if (!definitions.containsKey(e.getKey())) {
+          Sentence iff = Sentence.makeSentence(Iff.NAME, Arrays.asList(e.getKey(), e.getValue()));
+          assume(iff, -1 - premises.size() - definitions.size());
+          masterFunction.setDecomposed(iff);
+          definitions.put(e.getKey(), e.getValue());
+        }
+    }
+    if (s == BooleanSentence.TRUE || premises.contains(s))
+      return;
+
+    assume(s, -1 - premises.size() - definitions.size());
+    premises.add(s);
+    applyDecompositions();
+  }
+
+  /**
+   * Assign s true in the root TruthAssignment
+   */
+  private void assume(Sentence s, int inferenceNum) {
+    Decomposition p = new Decomposition(masterFunction, null, inferenceNum, inferenceNum);
+    p.setTrue(s);
+    mapped(p.infer(masterFunction));
+    inferenceList.add(p);
+  }
+
+  /**
+   * Test whether the premises asserted so far (and the negations of any goals) are consistent.
+   * The tree of the current level is kept between calls: its closed branches stay closed, and
+   * the premises asserted since the last call are only reasoned over in its open leaves.
+   *
+   * @return true if all premises can be true at the same time
+   */
+  public boolean checkConsistency() {
+    incremental = true;
+    masterFunction.addConstants(Sentence.getAllConstants());
+    closeBranches();   // The leaves contradicted by the new premises
+    run();
+    return isConsistent();
+  }
+
+
   /**
    * Print the TruthAssignment tree generated by the argument
    */
@@ -287,11 +605,25 @@ public class Prover implements Runnable {
 
   public void printArgument() {
     if (print) {
-      System.out.println("Premises: " + premises);
-      System.out.println("goals: " + goals);
+      System.out.println("Premises: " + premises.stream().map(this::getOriginalSentence).collect(Collectors.toList()));
+      System.out.println("goals: " + goals.stream().map(this::getOriginalSentence).collect(Collectors.toList()));
+      if (preprocessor != null) {
+        System.out.println("Normalized premises: " + premises);
+        System.out.println("Normalized goals: " + goals);
+      }
     }
   }
 
+  /**
+   * Obtain the Sentence given to this Prover which a premise or goal was normalized from
+   *
+   * @param s a premise or goal of this Prover
+   * @return the original form of s, or s itself if it was not preprocessed
+   */
+  public Sentence getOriginalSentence(Sentence s) {
+    return preprocessor == null ? s : preprocessor.getOriginal(s);
+  }
+
   public void printResult() {
     //If the tree has been completely decomposed
     //without inconsistencies, the argument is invalid
@@ -348,29 +680,396 @@ public class Prover implements Runnable {
     //System.out.println("Branching on: " + b + "\n" + openBranches);
     if (openBranches.isEmpty())  //Make sure no unnecessary branching occurs
       return;
+
+    //Regularity: a leaf which already satisfies one of the branches does not need to be split
+    List<TruthAssignment> leaves = b.getParent().getLeaves().filter(l -> openBranches.contains(l) && !b.isResolved(l))
+            .filter(l -> b.getBranches().stream().noneMatch(t -> isSatisfied(t, l))).collect(Collectors.toList());
+    if (leaves.isEmpty())
+      return;
     inferenceList.add(b);
 
-    b.getParent().getLeaves().filter(openBranches::contains).flatMap(b::infer).forEach(p -> {
+    leaves.stream().flatMap(b::infer).forEach(p -> {
     });
     b.getInferredOver().forEach(leaf -> {
       openBranches.addAll(leaf.getChildren());
       if (!leaf.getChildren().isEmpty())
         openBranches.remove(leaf);
     });
+    mapped(leaves.stream().flatMap(leaf -> leaf.getChildren().stream())
+            .flatMap(child -> child.keySet().stream().map(s -> Pair.makePair(s, child))));
+  }
+
+  /**
+   * Called with the mappings made by Branches, and by inferences made through infer,
+   * so that subclasses can track new mappings without searching the tree for them
+   *
+   * @param pairs the new mappings, with the TruthAssignments they were made in
+   */
+  protected void mapped(Stream<Pair> pairs) {
+  }
+
+  /**
+   * Resolve queued Branches in open leaves without splitting them. A Branch is
+   * applied to a leaf as a Decomposition when at most one of its children is
+   * consistent with the leaf (unit propagation), or when one of its children
+   * is a single literal whose atom occurs with no other polarity in the
+   * remaining work of the leaf (pure literal elimination). Branches which have
+   * been resolved in every open leaf are removed from the branchQueue.
+   *
+   * @return true if any Branch was resolved in some leaf
+   */
+  protected boolean propagate() {
+    boolean changed = false;
+    Map<TruthAssignment, Map<Sentence, Integer>> polarities = new HashMap<>();
+    List<Branch> finished = new ArrayList<>();
+
+    for (Branch b : branchQueue) {
+      if (b.size() < 2)
+        continue;
+      List<TruthAssignment> leaves = b.getParent().getLeaves()
+              .filter(l -> openBranches.contains(l) && !b.isResolved(l)).collect(Collectors.toList());
+
+      for (TruthAssignment leaf : leaves) {
+        if (b.getBranches().stream().anyMatch(t -> isSatisfied(t, leaf))) {
+          b.setResolved(leaf);
+          continue;
+        }
+        List<TruthAssignment> viable = b.getBranches().stream()
+                .filter(t -> isViable(t, leaf)).collect(Collectors.toList());
+
+        TruthAssignment child = null;
+        if (viable.size() <= 1)
+          child = viable.isEmpty() ? b.getBranches().get(0) : viable.get(0);
+        else if (!decomposeAll && !incremental)   // A later premise could use the other polarity
+          child = viable.stream().filter(t -> isPure(t, leaf, polarities)).findFirst().orElse(null);
+        if (child == null)
+          continue;
+
+        Decomposition d = new Decomposition(leaf, b.getOrigin(), inferenceCount++, b.getInferenceNum());
+        for (Sentence s : child.keySet()) {
+          if (child.hasMapping(s, true))
+            d.setTrue(s);
+          if (child.hasMapping(s, false))
+            d.setFalse(s);
+        }
+        if (viable.size() > 1)
+          pureLiterals.put(d, leaf);
+        else {
+          TruthAssignment chosen = child;
+          propagationReasons.put(d, b.getBranches().stream().filter(t -> t != chosen)
+                  .flatMap(t -> refutation(t, leaf)).collect(Collectors.toList()));
+        }
+        mapped(d.infer(leaf));
+        inferenceList.add(d);
+        b.setResolved(leaf);
+        polarities.remove(leaf);
+        changed = true;
+      }
+
+      if (b.getParent().getLeaves().filter(openBranches::contains).allMatch(b::isResolved))
+        finished.add(b);
+    }
+
+    branchQueue.removeAll(finished);
+    return changed;
+  }
+
+  /**
+   * Check whether the child of a Branch does not contradict any mapping of leaf,
+   * looking through negations
+   */
+  private static boolean isViable(TruthAssignment child, TruthAssignment leaf) {
+    return child.keySet().stream().allMatch(s -> {
+      if (!child.getTruthValue(s).isConsistent())
+        return false;
+      boolean b = child.models(s);
+      if (leaf.hasMapping(s, !b))
+        return false;
+      return !(s instanceof Not) || !leaf.hasMapping(s.getSubSentence(0), b);
+    });
+  }
+
+  /**
+   * Check whether every mapping of the child of a Branch already holds in leaf,
+   * looking through negations
+   */
+  private static boolean isSatisfied(TruthAssignment child, TruthAssignment leaf) {
+    return child.keySet().stream().allMatch(s -> {
+      if (!child.getTruthValue(s).isConsistent())
+        return false;
+      boolean b = child.models(s);
+      return leaf.hasMapping(s, b) || (s instanceof Not && leaf.hasMapping(s.getSubSentence(0), !b));
+    });
+  }
+
+  /**
+   * Find the mappings of leaf which contradict the child of a Branch
+   */
+  private static Stream<Map.Entry<Sentence, Boolean>> refutation(TruthAssignment child, TruthAssignment leaf) {
+    return child.keySet().stream().flatMap(s -> {
+      boolean b = child.models(s);
+      if (leaf.hasMapping(s, !b))
+        return Stream.of(literal(s, !b));
+      if (s instanceof Not && leaf.hasMapping(s.getSubSentence(0), b))
+        return Stream.of(literal(s.getSubSentence(0), b));
+      return Stream.empty();
+    }).limit(1);
+  }
+
+  /**
+   * Check whether the child of a Branch is a single literal whose atom is pure in leaf,
+   * meaning that no undecomposed Sentence, definition or pending Branch of the leaf
+   * contains the atom with the opposite polarity. Leaves with pending quantifiers are
+   * never considered, since their instances are not yet known.
+   */
+  private boolean isPure(TruthAssignment child, TruthAssignment leaf, Map<TruthAssignment, Map<Sentence, Integer>> cache) {
+    if (child.keySet().size() != 1)
+      return false;
+    Sentence s = child.keySet().iterator().next();
+    boolean positive = child.models(s);
+    if (s instanceof Not) {
+      s = s.getSubSentence(0);
+      positive = !positive;
+    }
+    if (!s.isAtomic() || leaf.hasMapping(s, !positive))
+      return false;
+
+    Map<Sentence, Integer> polarities = cache.computeIfAbsent(leaf, this::getPolarities);
+    if (polarities == null)
+      return false;
+    return polarities.getOrDefault(s, 0) == (positive ? 1 : 2);
+  }
+
+  /**
+   * Collect the polarities (1 for positive, 2 for negative, 3 for both) of every
+   * atom occurring in the remaining work of leaf, or null if it contains a quantifier
+   */
+  private Map<Sentence, Integer> getPolarities(TruthAssignment leaf) {
+    Map<Sentence, Integer> polarities = new HashMap<>();
+    List<Pair> pending = leaf.flattenUndecomposedSerial().collect(Collectors.toList());
+    if (pending.stream().anyMatch(p -> p.sentence.quantifierCount() > 0))
+      return null;
+    for (Pair p : pending)
+      for (boolean value : new boolean[]{true, false})
+        if (p.truthAssignment.hasMapping(p.sentence, value))
+          collectPolarities(p.sentence, value, polarities);
+
+    definitions.forEach((name, s) -> {
+      for (boolean b : new boolean[]{true, false}) {
+        collectPolarities(name, b, polarities);
+        collectPolarities(s, b, polarities);
+      }
+    });
+
+    for (Branch b : branchQueue) {
+      if (b.isResolved(leaf) || !isAncestor(b.getParent(), leaf))
+        continue;
+      for (TruthAssignment t : b.getBranches()) {
+        for (Sentence s : t.keySet()) {
+          if (s.quantifierCount() > 0)
+            return null;
+          for (boolean value : new boolean[]{true, false})
+            if (t.hasMapping(s, value))
+              collectPolarities(s, value, polarities);
+        }
+      }
+    }
+    return polarities;
+  }
+
+  private static boolean isAncestor(TruthAssignment a, TruthAssignment h) {
+    for (TruthAssignment t = h; t != null; t = t.getParent())
+      if (t == a)
+        return true;
+    return false;
+  }
+
+  private static void collectPolarities(Sentence s, boolean positive, Map<Sentence, Integer> polarities) {
+    if (s.isAtomic())
+      polarities.merge(s, positive ? 1 : 2, (i, j) -> i | j);
+    else if (s instanceof Not)
+      collectPolarities(s.getSubSentence(0), !positive, polarities);
+    else if (s instanceof Implies) {
+      collectPolarities(s.getSubSentence(0), !positive, polarities);
+      collectPolarities(s.getSubSentence(1), positive, polarities);
+    } else if (s instanceof And || s instanceof Or)
+      s.getArgs().forEach(a -> collectPolarities(a, positive, polarities));
+    else {   // Iff and any other connective contain their arguments with both polarities
+      s.getArgs().forEach(a -> {
+        collectPolarities(a, true, polarities);
+        collectPolarities(a, false, polarities);
+      });
+    }
   }
 
+  /**
+   * Remove every closed leaf from openBranches. A leaf is closed when it contains a
+   * contradiction or all of the decisions of a learned lemma. Unless every Sentence is
+   * being decomposed, each new contradiction is traced back to the branching decisions
+   * responsible for it: every leaf below the deepest of those decisions is closed as well
+   * (backjumping), and the decisions are recorded as a lemma to prune later branches.
+   */
   public void closeBranches() {
-    openBranches = openBranches.parallelStream().filter(TruthAssignment::areParentsConsistent).collect(Collectors.toList());
+    List<TruthAssignment> open = openBranches;
+    Map<Boolean, List<TruthAssignment>> leaves = openBranches.parallelStream()
+            .collect(Collectors.partitioningBy(h -> h.areParentsConsistent() && !violatesLemma(h)));
+    openBranches = leaves.get(true);
+    newLemmas.clear();
+    if (!decomposeAll && conflictAnalysis && !openBranches.isEmpty())
+      backjump(leaves.get(false));
+
+    if (openBranches.size() < open.size()) {
+      Set<TruthAssignment> kept = new HashSet<>(openBranches);
+      closed(open.stream().filter(h -> !kept.contains(h)).collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * Analyze the conflicts in newly closed leaves, and close every open leaf below the
+   * deepest decision each of them depends on
+   */
+  private void backjump(List<TruthAssignment> closed) {
+    Set<TruthAssignment> analyzed = new HashSet<>(), targets = new HashSet<>();
+    for (TruthAssignment leaf : closed) {
+      Closure c = leaf.closeBranch(inferenceCount);
+      if (c == null || !analyzed.add(c.getParent()))
+        continue;
+      TruthAssignment target = analyzeConflict(c.getParent(), c.getOrigin());
+      if (target != null)
+        targets.add(target);
+    }
+
+    if (!targets.isEmpty())
+      openBranches = openBranches.stream().filter(h -> targets.stream().noneMatch(t -> isAncestor(t, h)))
+              .collect(Collectors.toList());
+  }
+
+  /**
+   * Called by closeBranches with the leaves it closed, so that subclasses can forget
+   * what they track in branches which will not be reasoned over again
+   *
+   * @param leaves the leaves which are no longer open
+   */
+  protected void closed(List<TruthAssignment> leaves) {
+  }
+
+  /**
+   * Check whether h contains all of the decisions of a lemma. Every open leaf is checked against
+   * each lemma once, in the first call after it is learned. From then on, a leaf is only checked
+   * against the lemmas containing a literal mapped in the leaf itself, since its parent was already
+   * checked against the others.
+   */
+  private boolean violatesLemma(TruthAssignment h) {
+    return newLemmas.stream().anyMatch(l -> containsLemma(h, l))
+            || h.keySet().stream().flatMap(s -> Stream.of(true, false).filter(b -> h.getTruthValue(s).contains(b)).map(b -> literal(s, b)))
+            .flatMap(d -> lemmas.getOrDefault(d, Collections.emptySet()).stream()).anyMatch(l -> containsLemma(h, l));
+  }
+
+  private static boolean containsLemma(TruthAssignment h, Set<Map.Entry<Sentence, Boolean>> lemma) {
+    return lemma.stream().allMatch(d -> h.hasMapping(d.getKey(), d.getValue()));
+  }
+
+  /**
+   * Trace a conflict over s in h back through the justifications of its values to the
+   * branching decisions it depends on, and record those decisions as a lemma.
+   * Conflicts depending on instantiations of quantifiers are not traced, since
+   * the constants they use need not exist in other branches.
+   *
+   * @param h the TruthAssignment containing the conflict
+   * @param s the Sentence with conflicting values
+   * @return the deepest decision the conflict depends on (the root if there are none), or null if it could not be traced
+   */
+  private TruthAssignment analyzeConflict(TruthAssignment h, Sentence s) {
+    Deque<Map.Entry<Sentence, Boolean>> queue = new ArrayDeque<>();
+    Set<Map.Entry<Sentence, Boolean>> visited = new HashSet<>(), lemma = new HashSet<>();
+    Set<TruthAssignment> decisions = new HashSet<>();
+    for (boolean b : new boolean[]{true, false})
+      if (findMapping(h, s, b) != null)
+        queue.add(literal(s, b));
+
+    while (!queue.isEmpty()) {
+      Map.Entry<Sentence, Boolean> l = queue.poll();
+      if (!visited.add(l))
+        continue;
+      Sentence t = l.getKey();
+      boolean b = l.getValue();
+      TruthAssignment node = findMapping(h, t, b);
+      if (node == null)
+        return null;
+      Inference i = node.getTruthValue(t).getJustification(node.getTruthValue(t).getInferenceNum(b));
+
+      if (i != null && i.getClass() == Branch.class && ((Branch) i).getBranches().stream().anyMatch(c -> c.hasMapping(t, b))) {
+        decisions.add(node);
+        lemma.add(l);
+      } else if (i != null && i.getClass() == Decomposition.class && ((Decomposition) i).getAdditions().containsKey(t)
+              && ((Decomposition) i).getAdditions().get(t).contains(b)) {
+        if (pureLiterals.containsKey(i)) {
+          decisions.add(pureLiterals.get(i));
+          lemma.add(l);
+          continue;
+        }
+        Sentence o = i.getOrigin();
+        if (o == null)   // A premise or goal
+          continue;
+        List<Map.Entry<Sentence, Boolean>> values = new ArrayList<>();
+        for (boolean c : new boolean[]{true, false}) {
+          TruthAssignment n = findMapping(h, o, c);
+          if (n != null)
+            values.add(literal(o, c));
+          if (n != null && n.getTruthValue(o).getInferenceNum(c) == i.getJustificationNum()) {
+            values = Collections.singletonList(literal(o, c));
+            break;
+          }
+        }
+        if (values.isEmpty())
+          return null;
+        queue.addAll(values);
+        queue.addAll(propagationReasons.getOrDefault(i, Collections.emptyList()));
+        if (o instanceof Iff && definitions.get(o.getSubSentence(0)) == o.getSubSentence(1))   // An expanded definition
+          queue.add(literal(t == o.getSubSentence(0) ? o.getSubSentence(1) : o.getSubSentence(0), b));
+      } else
+        return null;
+    }
+
+    if (!lemma.isEmpty()) {
+      lemma.forEach(d -> lemmas.computeIfAbsent(d, k -> new HashSet<>()).add(lemma));
+      newLemmas.add(lemma);
+    }
+    return decisions.stream().max(Comparator.comparingInt(Prover::depth)).orElse(masterFunction);
+  }
+
+  /**
+   * Find the highest TruthAssignment from h to the root which maps s to b
+   */
+  private static TruthAssignment findMapping(TruthAssignment h, Sentence s, boolean b) {
+    TruthAssignment found = null;
+    for (TruthAssignment t = h; t != null; t = t.getParent()) {
+      if (t.keySet().contains(s) && t.getTruthValue(s).contains(b))
+        found = t;
+    }
+    return found;
+  }
+
+  private static int depth(TruthAssignment h) {
+    int depth = 0;
+    for (TruthAssignment t = h.getParent(); t != null; t = t.getParent())
+      ++depth;
+    return depth;
+  }
+
+  private static Map.Entry<Sentence, Boolean> literal(Sentence s, boolean b) {
+    return new AbstractMap.SimpleImmutableEntry<>(s, b);
   }
 
   protected void getCounterExamples() {
     if (masterFunction.isConsistent()) {
-      masterFunction.getLeavesParallel().filter(h -> h.isConsistent() && h.decomposedAll()).forEach(t -> System.out.println(t.getCounterExample() + "\n"));
+      masterFunction.getLeavesParallel().filter(h -> openBranches.contains(h) && h.isConsistent() && h.decomposedAll())
+              .forEach(t -> System.out.println(t.getCounterExample() + "\n"));
     }
   }
 
   public boolean isInvalid() {
-    return branchQueue.isEmpty() && openBranches.parallelStream().anyMatch(TruthAssignment::isSatisfied);
+    return branchQueue.isEmpty() && openBranches.parallelStream().anyMatch(h -> h.isSatisfied() && !hasPendingDefinitions(h));
   }
 
   public int getInferenceCount() {
@@ -384,4 +1083,29 @@ public class Prover implements Runnable {
   public ArrayList<Branch> getBranchQueue() {
     return branchQueue;
   }
+
+  /**
+   * The state of an incremental proof at a push
+   */
+  protected static class Level {
+    private final Set<Sentence> premises, rootBranches;
+    private final Map<Sentence, Sentence> definitions;
+    private final TruthAssignment root;
+    private final ArrayList<Branch> branchQueue;
+    private final List<TruthAssignment> openBranches;
+    private final Map<Map.Entry<Sentence, Boolean>, Set<Set<Map.Entry<Sentence, Boolean>>>> lemmas = new HashMap<>();
+    private final int inferences, inferenceCount;
+
+    private Level(Prover prover) {
+      premises = new HashSet<>(prover.premises);
+      rootBranches = prover.rootBranches;
+      definitions = new LinkedHashMap<>(prover.definitions);
+      root = prover.masterFunction;
+      branchQueue = prover.branchQueue;
+      openBranches = prover.openBranches;
+      prover.lemmas.forEach((d, l) -> lemmas.put(d, new HashSet<>(l)));
+      inferences = prover.inferenceList.size();
+      inferenceCount = prover.inferenceCount;
+    }
+  }
 }
@@ -2,11 +2,11 @@ package logicalreasoner.prover;
 
 import expression.sentence.DeclarationParser;
 import expression.sentence.ParserException;
+import expression.sentence.ProblemCompiler;
 import expression.sentence.Sentence;
 import expression.sentence.SentenceReader;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
 
@@ -30,6 +30,10 @@ public class ProverMain {
    * by DeclarationParser. Syntax for propositional sentences
    * is given by SentenceReader. All commands follow standard
    * S-Expression syntax.
+   * <p>
+   * The input file may also be a compiled problem, as written by
+   * ProblemCompiler. Run with -c inputFile outputFile to compile
+   * an input file without proving it.
    *
    * @param args input file for reasoning
    */
@@ -37,6 +41,10 @@ public class ProverMain {
     long startTime = System.nanoTime();
     if (args.length == 0)
       throw new IllegalArgumentException("Please provide an input file to read problems from. ");
+    if (args.length == 3 && args[0].equals("-c")) {
+      compileInputFile(args[1], args[2]);
+      return;
+    }
     if (args.length != 1) {
       System.out.println(usage());
       return;
@@ -59,14 +67,35 @@ public class ProverMain {
   }
 
   public static String usage() {
-    return "usage: java ProverMain <inputFile>\n";
+    return "usage: java ProverMain <inputFile>\n" +
+            "       java ProverMain -c <inputFile> <compiledFile>\n";
+  }
+
+  /**
+   * Parse a problem file and write it out in the compiled binary format
+   *
+   * @param inputFile    the problem file to compile
+   * @param compiledFile the file to write the compiled problem to
+   */
+  public static void compileInputFile(String inputFile, String compiledFile) {
+    Set<Sentence> premises = new HashSet<>();
+    try {
+      Sentence goal = readInputFile(inputFile, premises);
+      ProblemCompiler.compile(new File(compiledFile), premises, goal);
+    } catch (IOException ioe) {
+      System.out.println("Could not compile " + inputFile + " to " + compiledFile + " \n");
+      ioe.printStackTrace();
+    }
   }
 
-  public static Sentence readInputFile(String fileName, Set<Sentence> premises) throws FileNotFoundException {
+  public static Sentence readInputFile(String fileName, Set<Sentence> premises) throws IOException {
     return readInputFile(new File(fileName), premises);
   }
 
-  public static Sentence readInputFile(File inputFile, Set<Sentence> premises) throws FileNotFoundException {
+  public static Sentence readInputFile(File inputFile, Set<Sentence> premises) throws IOException {
+    if (ProblemCompiler.isCompiled(inputFile))
+      return ProblemCompiler.load(inputFile, premises);
+
     Sentence goal;
     Scanner scanner = new Scanner(inputFile).useDelimiter("\\Z");
     String file = scanner.next().replaceAll("[;].*?\\n", "");
@@ -1,12 +1,16 @@
 package logicalreasoner.prover;
 
 import expression.sentence.DeclarationParser;
+import expression.sentence.Iff;
 import expression.sentence.Sentence;
+import logicalreasoner.inference.Branch;
+import logicalreasoner.inference.Decomposition;
+import logicalreasoner.truthassignment.TruthAssignment;
 import org.junit.Assert;
 import org.junit.Test;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Test problems from Bram's Propositional Logic Arguments sheets
@@ -28,6 +32,22 @@ public class ProverTest {
       Assert.assertFalse("Prover determined a valid argument was invalid", prover.isConsistent());
     else
       Assert.assertTrue("Prover determined an invalid argument was valid", prover.isConsistent());
+
+    SATProver sat = new SATProver(p, Sentence.makeSentenceStrict(goal), false);
+    sat.run();
+    Assert.assertEquals("SATProver disagreed with the Prover", prover.isConsistent(), sat.isConsistent());
+    if (sat.isConsistent()) {
+      TruthAssignment h = new TruthAssignment();
+      sat.getCounterExample().forEach((s, b) -> h.set(s, b, 0));
+      p.forEach(s -> Assert.assertFalse("Counterexample falsifies premise " + s, Boolean.FALSE.equals(s.eval(h))));
+      Assert.assertFalse("Counterexample satisfies goal", Boolean.TRUE.equals(Sentence.makeSentenceStrict(goal).eval(h)));
+    }
+
+    for (boolean definitions : new boolean[]{false, true}) {
+      Prover normalized = new Prover(p, Collections.singleton(Sentence.makeSentenceStrict(goal)), false, new Preprocessor(definitions));
+      normalized.run();
+      Assert.assertEquals("Preprocessing changed the result of the proof", prover.isConsistent(), normalized.isConsistent());
+    }
     Sentence.clearDeclarations();
   }
 
@@ -1131,4 +1151,266 @@ public class ProverTest {
     premises.add("(and A (not E))");
     runProver(declarations, premises, "(not (or D E))", false);
   }
+
+  /**
+   * Compare the number of leaves generated for a nested iff chain S which occurs
+   * both positively and negatively, with and without introducing definitions.
+   * In negation normal form S and (not S) are different Sentences, so without
+   * definitions both are decomposed. Definitions only offset that cost of the
+   * normalization: the plain Prover, with unit propagation, generates no more
+   * leaves than with definitions, and no count grows with the nesting depth.
+   */
+  @Test
+  public void nestedIffBenchmark() {
+    List<Long> shallowLeaves = null;
+    for (int n = 2; n <= 6; ++n) {
+      DeclarationParser.parseDeclaration("Boolean X");
+      DeclarationParser.parseDeclaration("Boolean Y");
+      DeclarationParser.parseDeclaration("Boolean P0");
+      String chain = "P0";
+      for (int i = 1; i <= n; ++i) {
+        DeclarationParser.parseDeclaration("Boolean P" + i);
+        chain = "(iff " + chain + " P" + i + ")";
+      }
+      Set<Sentence> premises = new HashSet<>();
+      premises.add(Sentence.makeSentence("(iff (iff X " + chain + ") (iff Y (not " + chain + ")))"));
+      Set<Sentence> goals = Collections.singleton(Sentence.makeSentence("(iff X (not Y))"));
+
+      Prover plain = new Prover(premises, goals, false),
+              normalized = new Prover(premises, goals, false, new Preprocessor(false)),
+              defined = new Prover(premises, goals, false, new Preprocessor(true));
+      for (Prover prover : Arrays.asList(plain, normalized, defined)) {
+        prover.run();
+        Assert.assertFalse("Prover determined a valid argument was invalid", prover.isConsistent());
+      }
+
+      long plainLeaves = plain.getTruthAssignment().getLeaves().count(),
+              normalizedLeaves = normalized.getTruthAssignment().getLeaves().count(),
+              definedLeaves = defined.getTruthAssignment().getLeaves().count();
+      Assert.assertTrue("Definitions did not reduce branching", definedLeaves < normalizedLeaves);
+      Assert.assertTrue("Definitions increased branching", definedLeaves <= plainLeaves);
+      List<Long> leaves = Arrays.asList(plainLeaves, normalizedLeaves, definedLeaves);
+      if (shallowLeaves == null)
+        shallowLeaves = leaves;
+      Assert.assertEquals("Branching grew with nesting depth " + n, shallowLeaves, leaves);
+      Sentence.clearDeclarations();
+    }
+  }
+
+  /**
+   * A leaf which already satisfies a branch should not be split on it,
+   * and duplicate branches should only be added once.
+   */
+  @Test
+  public void redundantBranchTest() {
+    DeclarationParser.parseDeclaration("Boolean P");
+    DeclarationParser.parseDeclaration("Boolean Q");
+    DeclarationParser.parseDeclaration("Boolean R");
+    TruthAssignment h = new TruthAssignment();
+    h.setTrue(Sentence.makeSentence("(and P R)"), 0);
+    h.setTrue(Sentence.makeSentence("(or (and P R) Q)"), 0);
+    new Prover(h).run();
+    Assert.assertEquals("Prover branched on a satisfied Sentence", 1, h.getLeaves().count());
+
+    h = new TruthAssignment();
+    h.setTrue(Sentence.makeSentence("(or Q Q (and Q R))"), 0);
+    new Prover(h).run();
+    Assert.assertEquals("Prover added redundant branches", 2, h.getLeaves().count());
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Equivalence, contrariety and subcontrariety decided with binary decision diagrams
+   * should agree with the SATProver.
+   */
+  @Test
+  public void bddTest() {
+    DeclarationParser.parseDeclaration("Boolean P");
+    DeclarationParser.parseDeclaration("Boolean Q");
+    DeclarationParser.parseDeclaration("Boolean R");
+    List<Sentence> sentences = Arrays.asList("(not (and P Q))", "(or (not P) (not Q))", "(implies P (not Q))",
+            "(and P Q)", "(iff P Q)", "(iff (not P) Q)", "(or P (and Q R))", "(and (or P Q) (or P R))", "P", "(not P)")
+            .stream().map(Sentence::makeSentence).collect(Collectors.toList());
+    BDD bdd = new BDD();
+    for (Sentence s1 : sentences) {
+      for (Sentence s2 : sentences) {
+        SATProver contrary = new SATProver(new HashSet<>(Arrays.asList(s1, s2)), Collections.emptySet(), false),
+                subcontrary = new SATProver(Collections.emptySet(), new HashSet<>(Arrays.asList(s1, s2)), false),
+                equivalent = new SATProver(Collections.emptySet(), Sentence.makeSentence(Iff.NAME, Arrays.asList(s1, s2)), false);
+        for (SATProver prover : Arrays.asList(contrary, subcontrary, equivalent))
+          prover.run();
+        Assert.assertEquals("Wrong equivalence of " + s1 + " and " + s2, !equivalent.isConsistent(), bdd.isEquivalent(s1, s2));
+        Assert.assertEquals("Wrong contrariety of " + s1 + " and " + s2, !contrary.isConsistent(), bdd.isContrary(s1, s2));
+        Assert.assertEquals("Wrong subcontrariety of " + s1 + " and " + s2, !subcontrary.isConsistent(), bdd.isSubcontrary(s1, s2));
+      }
+    }
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * Move the Branch over origin to the top of the branchQueue and branch on it
+   */
+  private static void branchOn(Prover prover, Sentence origin) {
+    Branch b = prover.branchQueue.stream().filter(x -> x.getOrigin() == origin).findFirst().get();
+    prover.branchQueue.remove(b);
+    prover.branchQueue.add(b);
+    prover.addedBranches = false;
+    prover.addBranches();
+  }
+
+  /**
+   * @return the open leaf of prover in which every one of the given Sentences is true
+   */
+  private static TruthAssignment leaf(Prover prover, Sentence... mapped) {
+    return prover.openBranches.stream().filter(h -> Arrays.stream(mapped).allMatch(s -> h.hasMapping(s, true)))
+            .findFirst().get();
+  }
+
+  private static Map.Entry<Sentence, Boolean> literal(Sentence s, boolean b) {
+    return new AbstractMap.SimpleImmutableEntry<>(s, b);
+  }
+
+  /**
+   * A conflict found in one leaf which depends only on a decision above it should close
+   * the unexplored siblings of that leaf as well, and record the decision as a lemma.
+   * The premise decomposed in the leaf stands in for a prover exploring one leaf at a time.
+   */
+  @Test
+  public void backjumpTest() {
+    Arrays.asList("A", "B", "C", "D", "X").forEach(s -> DeclarationParser.parseDeclaration("Boolean " + s));
+    Sentence p = Sentence.makeSentence("(and A X)"), x = Sentence.makeSentence("X"),
+            s1 = Sentence.makeSentence("(or (and A X) B)"), s2 = Sentence.makeSentence("(or C D)");
+    Set<Sentence> premises = new HashSet<>(Arrays.asList(s1, s2, Sentence.makeSentence("(not X)")));
+    List<Boolean> verdicts = new ArrayList<>();
+    for (boolean analysis : new boolean[]{true, false}) {
+      Prover prover = new Prover(premises, false);
+      prover.setConflictAnalysis(analysis);
+      prover.applyDecompositions();
+      branchOn(prover, s1);
+      branchOn(prover, s2);
+      TruthAssignment pc = leaf(prover, p, Sentence.makeSentence("C")), pd = leaf(prover, p, Sentence.makeSentence("D"));
+      Decomposition d = new Decomposition(pc, p, prover.inferenceCount++, pc.getInferenceNum(p, true));
+      d.setTrue(x);
+      prover.infer(d);
+      prover.closeBranches();
+
+      Assert.assertTrue(pd.areParentsConsistent());
+      Assert.assertEquals("Backjumping did not skip the sibling", !analysis, prover.openBranches.contains(pd));
+      Assert.assertEquals(2 + (analysis ? 0 : 1), prover.openBranches.size());
+      Assert.assertEquals(analysis ? Collections.singleton(Collections.singleton(literal(p, true))) : null,
+              prover.lemmas.get(literal(p, true)));
+      prover.run();
+      verdicts.add(prover.isConsistent());
+    }
+    Assert.assertEquals(Arrays.asList(true, true), verdicts);
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * A lemma learned when one branch closes should close a leaf created later in another
+   * subtree as soon as it makes the same decision, before the leaf is reasoned over.
+   */
+  @Test
+  public void lemmaTest() {
+    Arrays.asList("A", "B", "C", "X").forEach(s -> DeclarationParser.parseDeclaration("Boolean " + s));
+    Sentence p = Sentence.makeSentence("(and A X)"), s1 = Sentence.makeSentence("(or (and A X) B)"),
+            s2 = Sentence.makeSentence("(or (and A X) C)");
+    Set<Sentence> premises = new HashSet<>(Arrays.asList(s1, s2, Sentence.makeSentence("(not X)")));
+    List<Boolean> verdicts = new ArrayList<>();
+    for (boolean analysis : new boolean[]{true, false}) {
+      Prover prover = new Prover(premises, false);
+      prover.setConflictAnalysis(analysis);
+      prover.applyDecompositions();
+      branchOn(prover, s1);
+      prover.applyDecompositions();
+      prover.closeBranches();
+      Assert.assertEquals(analysis ? Collections.singleton(Collections.singleton(literal(p, true))) : null,
+              prover.lemmas.get(literal(p, true)));
+
+      branchOn(prover, s2);
+      TruthAssignment later = leaf(prover, p);
+      prover.closeBranches();
+      Assert.assertTrue(later.areParentsConsistent());
+      Assert.assertEquals("The lemma did not prune the later branch", !analysis, prover.openBranches.contains(later));
+      prover.run();
+      verdicts.add(prover.isConsistent());
+    }
+    Assert.assertEquals(Arrays.asList(true, true), verdicts);
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * A conflict between a premise and the goal depends on no decision, so finding it in one
+   * leaf should close every open leaf without recording a lemma.
+   */
+  @Test
+  public void rootBackjumpTest() {
+    Arrays.asList("A", "B", "C", "D", "X").forEach(s -> DeclarationParser.parseDeclaration("Boolean " + s));
+    Sentence goal = Sentence.makeSentence("(implies A (not X))"), notX = Sentence.makeSentence("(not X)"),
+            s1 = Sentence.makeSentence("(or (and A X) B)"), s2 = Sentence.makeSentence("(or C D)");
+    Set<Sentence> premises = new HashSet<>(Arrays.asList(s1, s2, notX));
+    List<Boolean> verdicts = new ArrayList<>();
+    for (boolean analysis : new boolean[]{true, false}) {
+      Prover prover = new Prover(premises, goal, false);
+      prover.setConflictAnalysis(analysis);
+      TruthAssignment root = prover.getTruthAssignment();
+      root.setDecomposed(goal);
+      prover.applyDecompositions();
+      branchOn(prover, s1);
+      branchOn(prover, s2);
+      TruthAssignment bc = leaf(prover, Sentence.makeSentence("B"), Sentence.makeSentence("C"));
+      Decomposition d = new Decomposition(bc, goal, prover.inferenceCount++, root.getInferenceNum(goal, false));
+      d.setTrue(Sentence.makeSentence("A"));
+      d.setFalse(notX);
+      prover.infer(d);
+      List<TruthAssignment> siblings = new ArrayList<>(prover.openBranches);
+      siblings.remove(bc);
+      prover.closeBranches();
+
+      Assert.assertTrue(siblings.stream().allMatch(TruthAssignment::areParentsConsistent));
+      Assert.assertEquals("The conflict did not backjump to the root", analysis ? Collections.emptyList() : siblings, prover.openBranches);
+      Assert.assertTrue(prover.lemmas.isEmpty());
+      root.setUndecomposed(goal);
+      prover.run();
+      verdicts.add(prover.isConsistent());
+    }
+    Assert.assertEquals(Arrays.asList(false, false), verdicts);
+    Sentence.clearDeclarations();
+  }
+
+  /**
+   * A premise asserted after a consistency check should only be reasoned over in the open
+   * leaves of the tree already built, and pop should return to that tree as it was at the push.
+   */
+  @Test
+  public void incrementalTreeTest() {
+    Arrays.asList("A", "B", "C", "D").forEach(s -> DeclarationParser.parseDeclaration("Boolean " + s));
+    Prover prover = new Prover(Collections.emptySet(), false);
+    prover.assertPremise(Sentence.makeSentence("(or A B)"));
+    prover.assertPremise(Sentence.makeSentence("(or C D)"));
+    Assert.assertTrue(prover.checkConsistency());
+    TruthAssignment root = prover.getTruthAssignment();
+    Assert.assertEquals(4, prover.openBranches.size());
+
+    int inferences = prover.getInferenceCount();
+    List<TruthAssignment> open = new ArrayList<>(prover.openBranches);
+    prover.push();
+    prover.assertPremise(Sentence.makeSentence("(not A)"));
+    prover.assertPremise(Sentence.makeSentence("(not B)"));
+    Assert.assertFalse(prover.checkConsistency());
+    prover.pop();
+    Assert.assertSame(root, prover.getTruthAssignment());
+    Assert.assertEquals(open, prover.openBranches);
+    Assert.assertEquals(inferences, prover.getInferenceCount());
+
+    prover.assertPremise(Sentence.makeSentence("(not C)"));
+    Assert.assertTrue(prover.checkConsistency());
+    Assert.assertSame(root, prover.getTruthAssignment());
+    Assert.assertEquals(4, root.getLeaves().count());
+    Assert.assertEquals(2, prover.openBranches.size());
+    prover.assertPremise(Sentence.makeSentence("(not D)"));
+    Assert.assertFalse(prover.checkConsistency());
+    Assert.assertEquals(4, root.getLeaves().count());
+    Sentence.clearDeclarations();
+  }
 }
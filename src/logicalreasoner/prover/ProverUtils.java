@@ -3,17 +3,34 @@ package logicalreasoner.prover;
 import expression.sentence.Sentence;
 import expression.sentence.SentenceReader;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * The ProverUtils interface is a way to access the functionality of a
  * prover using various methods for specific tasks. For instance, a single
  * prover can be configured to test for argument validity, consistency, equivalence, and etc.
+ * <p>
+ * Propositional queries are decided by the SATProver, and first-order queries by the FOLProver.
+ * Propositional equivalence, contrariety and subcontrariety are decided by comparing
+ * binary decision diagrams, which are shared between queries.
+ * <p>
+ * Every first-order query is reduced to whether some Sentences can all be true while others
+ * are all false, and the result is cached under those two sets of (interned) Sentences.
+ * Queries which reduce to the same sets, such as FOLImplies(a, b) and isFOLValid({a}, b),
+ * or isFOLContrary(a, b) and isFOLContrary(b, a), share a result, as do
+ * isFOLEquivalent(a, b) and isFOLEquivalent(b, a).
  */
 public class ProverUtils {
+  private static final BDD bdd = new BDD();
+  private static final ResultCache<List<Set<Sentence>>, Boolean> results = new ResultCache<>(4096);
+
+  /**
+   * @return the cache of first-order query results, with its hit and miss counts
+   */
+  public static ResultCache<List<Set<Sentence>>, Boolean> getResultCache() {
+    return results;
+  }
 
   /**
    * Test whether the set of premises logically implies the conclusion
@@ -24,9 +41,9 @@ public class ProverUtils {
    * @return true, if the argument is valid, false otherwise
    */
   public static boolean isPropositionallyValid(Set<Sentence> premises, Sentence conclusion) {
-    if (!premises.stream().anyMatch(Sentence::isPropositional) || !conclusion.isPropositional())
+    if (!premises.stream().allMatch(Sentence::isPropositional) || !conclusion.isPropositional())
       throw new RuntimeException("Cannot run propositional proof over a quantified statement.");
-    Prover prover = new Prover(premises, conclusion, false);
+    SATProver prover = new SATProver(premises, conclusion, false);
     prover.run();
     return !prover.isConsistent();
   }
@@ -56,7 +73,7 @@ public class ProverUtils {
   public static boolean isPropositionallyConsistent(Set<Sentence> sentences) {
     if (!sentences.stream().allMatch(Sentence::isPropositional))
       throw new RuntimeException("Cannot run propositional proof over a quantified statement.");
-    Prover prover = new Prover(sentences, false);
+    SATProver prover = new SATProver(sentences, false);
     prover.run();
     return prover.isConsistent();
   }
@@ -81,7 +98,7 @@ public class ProverUtils {
   public static boolean isPropositionalTautology(Sentence sentence) {
     if (!sentence.isPropositional())
       throw new RuntimeException("Cannot run propositional proof over a quantified statement.");
-    Prover prover = new Prover(new HashSet<>(), sentence, false);
+    SATProver prover = new SATProver(new HashSet<>(), sentence, false);
     prover.run();
     return !prover.isConsistent();
   }
@@ -97,7 +114,7 @@ public class ProverUtils {
       throw new RuntimeException("Cannot run propositional proof over a quantified statement.");
     HashSet<Sentence> s = new HashSet<>();
     s.add(sentence);
-    Prover prover = new Prover(s, Collections.emptySet(), false);
+    SATProver prover = new SATProver(s, Collections.emptySet(), false);
     prover.run();
     return !prover.isConsistent();
   }
@@ -123,6 +140,9 @@ public class ProverUtils {
    * @return true if s1 and s2 are equivalent, false otherwise
    */
   public static boolean isPropositionallyEquivalent(Sentence s1, Sentence s2) {
+    Boolean b = bdd.isEquivalent(s1, s2);
+    if (b != null)
+      return b;
     return propositionallyImplies(s1, s2) && propositionallyImplies(s2, s1);
   }
 
@@ -137,6 +157,9 @@ public class ProverUtils {
    * @return true if s1 and s2 are contrary, false otherwise
    */
   public static boolean isPropositionallyContrary(Sentence s1, Sentence s2) {
+    Boolean b = bdd.isContrary(s1, s2);
+    if (b != null)
+      return b;
     HashSet<Sentence> s = new HashSet<>();
     s.add(s1);
     s.add(s2);
@@ -156,11 +179,14 @@ public class ProverUtils {
   public static boolean isPropositionallySubcontrary(Sentence s1, Sentence s2) {
     if (!(s1.isPropositional() && s2.isPropositional()))
       throw new RuntimeException("Cannot run propositional over quantified sentences.");
+    Boolean b = bdd.isSubcontrary(s1, s2);
+    if (b != null)
+      return b;
 
     HashSet<Sentence> s = new HashSet<>();
     s.add(s1);
     s.add(s2);
-    Prover prover = new Prover(Collections.emptySet(), s, false);
+    SATProver prover = new SATProver(Collections.emptySet(), s, false);
     prover.run();
     return !prover.isConsistent();
   }
@@ -174,9 +200,7 @@ public class ProverUtils {
    * @return true, if the argument is valid, false otherwise
    */
   public static boolean isFOLValid(Set<Sentence> premises, Sentence conclusion) {
-    Prover prover = new FOLProver(premises, conclusion, false);
-    prover.run();
-    return !prover.isConsistent();
+    return !isFOLSatisfiable(premises, conclusion == null ? Collections.emptySet() : Collections.singleton(conclusion));
   }
 
   /**
@@ -194,6 +218,24 @@ public class ProverUtils {
     return isFOLValid(s, c);
   }
 
+  /**
+   * Test whether the set of premises logically implies the conclusion
+   * under first-order logic, making at most maxBound rounds of quantifier instantiation
+   *
+   * @param premises   the set of assumptions
+   * @param conclusion the goal of the proof
+   * @param maxBound   the maximum number of rounds of quantifier instantiation
+   * @return true, if the argument is valid, false if it is not, or null if that is unknown at the bound
+   */
+  public static Boolean isFOLValid(Set<Sentence> premises, Sentence conclusion, int maxBound) {
+    FOLProver prover = new FOLProver(premises, conclusion, false);
+    prover.setRoundBound(maxBound);
+    prover.run();
+    if (prover.reachedBound())
+      return null;
+    return !prover.isConsistent();
+  }
+
   /**
    * Test to see if all of the sentences can be true at the same time
    * under first-order logic
@@ -202,9 +244,7 @@ public class ProverUtils {
    * @return true if the sentences are consistent, false otherwise
    */
   public static boolean isFOLConsistent(Set<Sentence> sentences) {
-    Prover prover = new FOLProver(sentences, false);
-    prover.run();
-    return prover.isConsistent();
+    return isFOLSatisfiable(sentences, Collections.emptySet());
   }
 
   /**
@@ -225,9 +265,7 @@ public class ProverUtils {
    * @return true if sentence is a tautology, false otherwise
    */
   public static boolean isFOLTautology(Sentence sentence) {
-    Prover prover = new FOLProver(new HashSet<>(), sentence, false);
-    prover.run();
-    return !prover.isConsistent();
+    return !isFOLSatisfiable(Collections.emptySet(), Collections.singleton(sentence));
   }
 
   /**
@@ -237,11 +275,7 @@ public class ProverUtils {
    * @return true if sentence is a contradiction, false otherwise
    */
   public static boolean isFOLContradiction(Sentence sentence) {
-    HashSet<Sentence> s = new HashSet<>();
-    s.add(sentence);
-    Prover prover = new FOLProver(s, Collections.emptySet(), false);
-    prover.run();
-    return !prover.isConsistent();
+    return !isFOLSatisfiable(Collections.singleton(sentence), Collections.emptySet());
   }
 
   /**
@@ -265,7 +299,9 @@ public class ProverUtils {
    * @return true if s1 and s2 are equivalent, false otherwise
    */
   public static boolean isFOLEquivalent(Sentence s1, Sentence s2) {
-    return FOLImplies(s1, s2) && FOLImplies(s2, s1);
+    // Keyed on the unordered pair alone, which no other query is keyed on
+    List<Set<Sentence>> key = Collections.singletonList(new HashSet<>(Arrays.asList(s1, s2)));
+    return results.get(key, () -> FOLImplies(s1, s2) && FOLImplies(s2, s1));
   }
 
   /**
@@ -282,7 +318,7 @@ public class ProverUtils {
     HashSet<Sentence> s = new HashSet<>();
     s.add(s1);
     s.add(s2);
-    return !isPropositionallyConsistent(s);
+    return !isFOLSatisfiable(s, Collections.emptySet());
   }
 
   /**
@@ -299,8 +335,23 @@ public class ProverUtils {
     HashSet<Sentence> s = new HashSet<>();
     s.add(s1);
     s.add(s2);
-    Prover prover = new FOLProver(Collections.emptySet(), s, false);
-    prover.run();
-    return !prover.isConsistent();
+    return !isFOLSatisfiable(Collections.emptySet(), s);
+  }
+
+  /**
+   * Test whether all of trueSentences can be true while all of falseSentences are false,
+   * under first-order logic. Results are cached
+   *
+   * @param trueSentences  the sentences to assign true
+   * @param falseSentences the sentences to assign false
+   * @return true if such an assignment exists, false otherwise
+   */
+  private static boolean isFOLSatisfiable(Set<Sentence> trueSentences, Set<Sentence> falseSentences) {
+    List<Set<Sentence>> key = Arrays.asList(new HashSet<>(trueSentences), new HashSet<>(falseSentences));
+    return results.get(key, () -> {
+      Prover prover = new FOLProver(key.get(0), key.get(1), false);
+      prover.run();
+      return prover.isConsistent();
+    });
   }
 }
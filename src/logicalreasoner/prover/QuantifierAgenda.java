@@ -0,0 +1,104 @@
+package logicalreasoner.prover;
+
+import expression.sentence.ForAll;
+import logicalreasoner.truthassignment.Pair;
+import logicalreasoner.truthassignment.TruthAssignment;
+
+import java.util.*;
+
+/**
+ * The QuantifierAgenda class holds the quantified Sentences waiting to be instantiated,
+ * in priority order. It persists across rounds of quantifier instantiation and is
+ * updated as quantified Sentences are mapped, instead of being rebuilt every round.
+ * <p>
+ * Membership is tested in constant time, and entries which have been decomposed or
+ * removed since they were added are skipped when polled (lazy deletion). A true universal
+ * quantifier is only added again once it is given new constants, or if it was deferred
+ * to a later round.
+ */
+public class QuantifierAgenda {
+  private final PriorityQueue<Pair> queue;
+  private final Set<Pair> members = new HashSet<>();
+  private final Map<TruthAssignment, Set<Pair>> byTruthAssignment = new HashMap<>();
+  private final Set<TruthAssignment> closed = new HashSet<>();
+  private List<Pair> deferred = new ArrayList<>();
+
+  /**
+   * @param comparator the order in which quantified Sentences are polled
+   */
+  public QuantifierAgenda(Comparator<Pair> comparator) {
+    queue = new PriorityQueue<>(comparator);
+  }
+
+  /**
+   * Add a quantified Sentence, unless it is already waiting, has been decomposed,
+   * or is mapped in a TruthAssignment which has been removed
+   *
+   * @param p the quantified Sentence and the TruthAssignment it is mapped in
+   * @return true if p was added
+   */
+  public boolean add(Pair p) {
+    if (members.contains(p) || closed.contains(p.truthAssignment) || p.truthAssignment.isDecomposed(p.sentence))
+      return false;
+    members.add(p);
+    byTruthAssignment.computeIfAbsent(p.truthAssignment, k -> new HashSet<>()).add(p);
+    return queue.add(p);
+  }
+
+  /**
+   * Remove the first quantified Sentence which has not been decomposed
+   *
+   * @return the removed Sentence, or null if none is waiting
+   */
+  public Pair poll() {
+    while (!queue.isEmpty()) {
+      Pair p = queue.poll();
+      if (!members.remove(p))
+        continue;
+      byTruthAssignment.get(p.truthAssignment).remove(p);
+      if (!p.truthAssignment.isDecomposed(p.sentence))
+        return p;
+    }
+    return null;
+  }
+
+  /**
+   * Keep a polled quantified Sentence which is not finished for the next call to refresh
+   */
+  public void defer(Pair p) {
+    deferred.add(p);
+  }
+
+  /**
+   * Add again every quantified Sentence deferred since the last call
+   */
+  public void refresh() {
+    List<Pair> l = deferred;
+    deferred = new ArrayList<>();
+    l.forEach(this::add);
+  }
+
+  /**
+   * Forget every quantified Sentence mapped in h, which will not be reasoned over again
+   *
+   * @param h a TruthAssignment without open leaves
+   */
+  public void remove(TruthAssignment h) {
+    closed.add(h);
+    Set<Pair> removed = byTruthAssignment.remove(h);
+    if (removed != null)
+      members.removeAll(removed);
+  }
+
+  public boolean contains(Pair p) {
+    return members.contains(p);
+  }
+
+  public boolean isEmpty() {
+    return members.isEmpty();
+  }
+
+  public int size() {
+    return members.size();
+  }
+}
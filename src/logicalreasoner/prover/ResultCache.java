@@ -0,0 +1,86 @@
+package logicalreasoner.prover;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The ResultCache class is a bounded, thread-safe memo of query results.
+ * Once it holds more than its capacity, the least recently used result is evicted.
+ * <p>
+ * Results are computed outside of the lock, so that a long proof never blocks
+ * other queries; two threads missing on the same key may then both compute it.
+ */
+public class ResultCache<K, V> {
+  private final int capacity;
+  private final Map<K, V> results;
+  private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+  /**
+   * @param capacity the maximum number of results kept
+   */
+  public ResultCache(int capacity) {
+    this.capacity = capacity;
+    results = new LinkedHashMap<K, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > ResultCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Get the result stored for key, computing and storing it if there is none
+   *
+   * @param key     the query
+   * @param compute computes the result of the query
+   * @return the result of the query
+   */
+  public V get(K key, Supplier<V> compute) {
+    V v;
+    synchronized (results) {
+      v = results.get(key);
+    }
+    if (v != null) {
+      hits.incrementAndGet();
+      return v;
+    }
+
+    misses.incrementAndGet();
+    v = compute.get();
+    synchronized (results) {
+      results.put(key, v);
+    }
+    return v;
+  }
+
+  /**
+   * Remove every stored result, and reset the hit and miss counts
+   */
+  public void clear() {
+    synchronized (results) {
+      results.clear();
+    }
+    hits.set(0);
+    misses.set(0);
+  }
+
+  public int size() {
+    synchronized (results) {
+      return results.size();
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+}
@@ -0,0 +1,518 @@
+package logicalreasoner.prover;
+
+import expression.sentence.*;
+
+import java.util.*;
+
+/**
+ * The SATProver class is an alternative to the Prover for arguments
+ * in which every premise and goal is propositional. Instead of building
+ * a TruthAssignment tree, it converts the premises and negated goals into
+ * clauses and decides their satisfiability with a conflict driven clause
+ * learning (CDCL) search: two watched literal propagation, first-UIP clause
+ * learning, VSIDS variable ordering, phase saving and Luby restarts.
+ * <p>
+ * Atoms (Propositions, Predicates and Identities) become variables, and every
+ * compound subsentence is named by a fresh variable (the Tseitin encoding),
+ * so that shared subsentences are encoded only once.
+ * <p>
+ * Literals are stored as integers: 2v for variable v, and 2v + 1 for its negation.
+ */
+public class SATProver implements Runnable {
+  private static final byte UNASSIGNED = 0, TRUE = 1, FALSE = -1;
+  private static final int RESTART_BASE = 100;
+  private static final double DECAY = 0.95;
+
+  protected Set<Sentence> premises, goals;
+  protected boolean print, finishedProof, consistent;
+
+  //The variable (or negated variable) standing for each encoded Sentence
+  private Map<Sentence, Integer> literals;
+  private List<Sentence> atoms;
+  private int trueLiteral;
+
+  private List<int[]> clauses;
+  private List<List<int[]>> watches;
+  private int numVars;
+  private boolean emptyClause;
+
+  private byte[] values;
+  private int[] levels;
+  private int[][] reasons;
+  private boolean[] phases, seen;
+  private int[] trail;
+  private int trailSize, propagated;
+  private List<Integer> trailLimits;
+
+  private double[] activity;
+  private double activityIncrement;
+  private int[] heap, heapIndex;
+  private int heapSize;
+
+  private int conflicts, decisions;
+
+  /**
+   * Initialize the reasoner with the premises and the negation of all goals
+   *
+   * @param premises the prior knowledge of the prover
+   * @param goals    the goals of the prover (to be negated)
+   * @param print    Print log output if true
+   */
+  public SATProver(Set<Sentence> premises, Set<Sentence> goals, boolean print) {
+    this.premises = new HashSet<>(premises);
+    this.goals = new HashSet<>(goals);
+    this.goals.removeIf(Objects::isNull);
+    this.print = print;
+
+    literals = new HashMap<>();
+    atoms = new ArrayList<>();
+    clauses = new ArrayList<>();
+    watches = new ArrayList<>();
+    trailLimits = new ArrayList<>();
+    atoms.add(null);  // Variable 0 is unused
+    watches.add(new ArrayList<>());
+    watches.add(new ArrayList<>());
+    numVars = 0;
+
+    trueLiteral = newVariable(BooleanSentence.TRUE);
+    addClause(trueLiteral);
+    this.premises.forEach(s -> addClause(encode(s)));
+    this.goals.forEach(s -> addClause(negate(encode(s))));
+  }
+
+  /**
+   * Initialize the reasoner with the premises and the negation of the goal
+   *
+   * @param premises the prior knowledge of the prover
+   * @param goal     the goal of the prover (to be negated)
+   * @param print    Print log output if true
+   */
+  public SATProver(Set<Sentence> premises, Sentence goal, boolean print) {
+    this(premises, Collections.singleton(goal), print);
+  }
+
+  public SATProver(Set<Sentence> premises, boolean print) {
+    this(premises, Collections.emptySet(), print);
+  }
+
+  /**
+   * Run the prover over the given premises & conclusion
+   */
+  public void run() {
+    if (print) {
+      System.out.println("Premises: " + premises);
+      System.out.println("goals: " + goals);
+    }
+    consistent = solve();
+    finishedProof = true;
+    if (print) {
+      if (consistent)
+        System.out.println("\nThe argument is NOT valid. Counterexample: \n" + getCounterExample() + "\n");
+      else
+        System.out.println("\nThe argument IS valid.\n");
+      System.out.println(numVars + " variables, " + clauses.size() + " clauses, "
+              + decisions + " decisions, " + conflicts + " conflicts");
+    }
+  }
+
+  public boolean finishedProof() {
+    return finishedProof;
+  }
+
+  /**
+   * Check whether the premises and the negated goals can all be satisfied
+   *
+   * @return true if a counterexample exists (the argument is invalid), false otherwise
+   */
+  public boolean isConsistent() {
+    return consistent;
+  }
+
+  /**
+   * Get the values of all atoms in the satisfying assignment found
+   *
+   * @return a map of atomic Sentences to their truth values, or null if there is no counterexample
+   */
+  public Map<Sentence, Boolean> getCounterExample() {
+    if (!consistent)
+      return null;
+    Map<Sentence, Boolean> m = new HashMap<>();
+    for (int v = 1; v <= numVars; ++v) {
+      Sentence s = atoms.get(v);
+      if (s != null && s != BooleanSentence.TRUE)
+        m.put(s, values[v] == TRUE);
+    }
+    return m;
+  }
+
+  // ---------------------------------------------------------------- Encoding
+
+  private static int negate(int literal) {
+    return literal ^ 1;
+  }
+
+  private static int var(int literal) {
+    return literal >> 1;
+  }
+
+  /**
+   * Create a new variable
+   *
+   * @param atom the atomic Sentence it represents, or null if it names a compound Sentence
+   * @return the positive literal of the variable
+   */
+  private int newVariable(Sentence atom) {
+    ++numVars;
+    atoms.add(atom);
+    watches.add(new ArrayList<>());
+    watches.add(new ArrayList<>());
+    return 2 * numVars;
+  }
+
+  /**
+   * Get the literal equivalent to s, adding the clauses defining it if necessary
+   */
+  private int encode(Sentence s) {
+    Integer l = literals.get(s);
+    if (l != null)
+      return l;
+
+    int literal;
+    List<Sentence> args = s.getArgs();
+    if (s == BooleanSentence.TRUE)
+      literal = trueLiteral;
+    else if (s == BooleanSentence.FALSE)
+      literal = negate(trueLiteral);
+    else if (s instanceof Not)
+      literal = negate(encode(args.get(0)));
+    else if (s instanceof And || s instanceof Or) {
+      // x <-> and(a_i) is (not x or a_i) for all i, and (x or not a_1 or ... or not a_n)
+      // x <-> or(a_i) is the same with every literal negated
+      int sign = s instanceof And ? 0 : 1;
+      int[] lits = args.stream().mapToInt(this::encode).toArray();
+      literal = newVariable(null);
+      int[] c = new int[lits.length + 1];
+      c[0] = literal ^ sign;
+      for (int i = 0; i < lits.length; ++i) {
+        addClause(negate(literal) ^ sign, lits[i] ^ sign);
+        c[i + 1] = negate(lits[i]) ^ sign;
+      }
+      addClause(c);
+    } else if (s instanceof Implies) {
+      int a = encode(args.get(0)), b = encode(args.get(1));
+      literal = newVariable(null);
+      addClause(negate(literal), negate(a), b);
+      addClause(literal, a);
+      addClause(literal, negate(b));
+    } else if (s instanceof Iff) {
+      int a = encode(args.get(0)), b = encode(args.get(1));
+      literal = newVariable(null);
+      addClause(negate(literal), negate(a), b);
+      addClause(negate(literal), a, negate(b));
+      addClause(literal, a, b);
+      addClause(literal, negate(a), negate(b));
+    } else if (s instanceof Identity && args.get(0).equals(args.get(1)))
+      literal = trueLiteral;
+    else if (s.isQuantifier())
+      throw new RuntimeException("Cannot run propositional proof over a quantified statement.");
+    else
+      literal = newVariable(s);
+
+    literals.put(s, literal);
+    return literal;
+  }
+
+  /**
+   * Add a clause to the problem, removing duplicate literals and tautologies
+   */
+  private void addClause(int... lits) {
+    int[] c = Arrays.stream(lits).distinct().toArray();
+    Set<Integer> set = new HashSet<>();
+    for (int l : c) {
+      if (set.contains(negate(l)))
+        return;
+      set.add(l);
+    }
+    if (c.length == 0)
+      emptyClause = true;
+    clauses.add(c);
+  }
+
+  // ---------------------------------------------------------------- Search
+
+  private byte value(int literal) {
+    byte v = values[var(literal)];
+    return (literal & 1) == 0 ? v : (byte) -v;
+  }
+
+  private int decisionLevel() {
+    return trailLimits.size();
+  }
+
+  private void assign(int literal, int[] reason) {
+    int v = var(literal);
+    values[v] = (literal & 1) == 0 ? TRUE : FALSE;
+    levels[v] = decisionLevel();
+    reasons[v] = reason;
+    trail[trailSize++] = literal;
+  }
+
+  private void watch(int[] c) {
+    watches.get(c[0]).add(c);
+    watches.get(c[1]).add(c);
+  }
+
+  private boolean solve() {
+    if (emptyClause)
+      return false;
+    values = new byte[numVars + 1];
+    levels = new int[numVars + 1];
+    reasons = new int[numVars + 1][];
+    phases = new boolean[numVars + 1];
+    seen = new boolean[numVars + 1];
+    trail = new int[numVars + 1];
+    activity = new double[numVars + 1];
+    activityIncrement = 1;
+    heap = new int[numVars + 1];
+    heapIndex = new int[numVars + 1];
+    for (int v = 1; v <= numVars; ++v)
+      heapInsert(v);
+
+    for (int[] c : clauses) {
+      if (c.length == 1) {
+        if (value(c[0]) == FALSE)
+          return false;
+        if (value(c[0]) == UNASSIGNED)
+          assign(c[0], c);
+      } else
+        watch(c);
+    }
+
+    int restart = 1, conflictsUntilRestart = RESTART_BASE;
+    while (true) {
+      int[] conflict = propagate();
+      if (conflict != null) {
+        ++conflicts;
+        if (decisionLevel() == 0)
+          return false;
+
+        List<Integer> learnt = new ArrayList<>();
+        int level = analyze(conflict, learnt);
+        backtrack(level);
+        int[] c = learnt.stream().mapToInt(Integer::intValue).toArray();
+        if (c.length == 1)
+          assign(c[0], c);
+        else {
+          clauses.add(c);
+          watch(c);
+          assign(c[0], c);
+        }
+        activityIncrement /= DECAY;
+
+        if (--conflictsUntilRestart == 0) {
+          backtrack(0);
+          conflictsUntilRestart = RESTART_BASE * luby(++restart);
+        }
+      } else {
+        int v = pickBranchVariable();
+        if (v == 0)
+          return true;
+        ++decisions;
+        trailLimits.add(trailSize);
+        assign(phases[v] ? 2 * v : 2 * v + 1, null);
+      }
+    }
+  }
+
+  /**
+   * Propagate all assignments on the trail through the watched literals
+   *
+   * @return a clause with all literals false, or null if there is no conflict
+   */
+  private int[] propagate() {
+    while (propagated < trailSize) {
+      int falseLiteral = negate(trail[propagated++]);
+      List<int[]> watchList = watches.get(falseLiteral);
+      int i = 0, j = 0;
+      while (i < watchList.size()) {
+        int[] c = watchList.get(i++);
+        if (c[0] == falseLiteral) {  // Keep the false literal in position 1
+          c[0] = c[1];
+          c[1] = falseLiteral;
+        }
+        if (value(c[0]) == TRUE) {
+          watchList.set(j++, c);
+          continue;
+        }
+
+        boolean moved = false;
+        for (int k = 2; k < c.length; ++k) {
+          if (value(c[k]) != FALSE) {
+            c[1] = c[k];
+            c[k] = falseLiteral;
+            watches.get(c[1]).add(c);
+            moved = true;
+            break;
+          }
+        }
+        if (moved)
+          continue;
+
+        watchList.set(j++, c);
+        if (value(c[0]) == FALSE) {
+          while (i < watchList.size())
+            watchList.set(j++, watchList.get(i++));
+          watchList.subList(j, watchList.size()).clear();
+          propagated = trailSize;
+          return c;
+        }
+        assign(c[0], c);
+      }
+      watchList.subList(j, watchList.size()).clear();
+    }
+    return null;
+  }
+
+  /**
+   * Derive the first-UIP clause from a conflict, with the asserting literal in position 0
+   * and a literal of the backtrack level in position 1
+   *
+   * @return the decision level to backtrack to
+   */
+  private int analyze(int[] conflict, List<Integer> learnt) {
+    learnt.add(-1);
+    int pathCount = 0, literal = -1, index = trailSize - 1;
+    int[] c = conflict;
+    do {
+      for (int q : c) {
+        if (q == literal)
+          continue;
+        int v = var(q);
+        if (!seen[v] && levels[v] > 0) {
+          seen[v] = true;
+          bumpActivity(v);
+          if (levels[v] == decisionLevel())
+            ++pathCount;
+          else
+            learnt.add(q);
+        }
+      }
+      while (!seen[var(trail[index])])
+        --index;
+      literal = trail[index--];
+      c = reasons[var(literal)];
+      seen[var(literal)] = false;
+      --pathCount;
+    } while (pathCount > 0);
+    learnt.set(0, negate(literal));
+
+    int level = 0, max = 1;
+    for (int i = 1; i < learnt.size(); ++i) {
+      seen[var(learnt.get(i))] = false;
+      if (levels[var(learnt.get(i))] > level) {
+        level = levels[var(learnt.get(i))];
+        max = i;
+      }
+    }
+    if (learnt.size() > 1)
+      Collections.swap(learnt, 1, max);
+    return level;
+  }
+
+  private void backtrack(int level) {
+    if (decisionLevel() <= level)
+      return;
+    int limit = trailLimits.get(level);
+    for (int i = trailSize - 1; i >= limit; --i) {
+      int v = var(trail[i]);
+      phases[v] = values[v] == TRUE;
+      values[v] = UNASSIGNED;
+      reasons[v] = null;
+      if (heapIndex[v] < 0)
+        heapInsert(v);
+    }
+    trailSize = propagated = limit;
+    trailLimits.subList(level, trailLimits.size()).clear();
+  }
+
+  private int pickBranchVariable() {
+    while (heapSize > 0) {
+      int v = heapRemoveMax();
+      if (values[v] == UNASSIGNED)
+        return v;
+    }
+    return 0;
+  }
+
+  /**
+   * The Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, ... (1-indexed)
+   */
+  private static int luby(int i) {
+    int k = 1;
+    while ((1 << k) - 1 < i)
+      ++k;
+    while (i != (1 << k) - 1) {
+      i -= (1 << (k - 1)) - 1;
+      k = 1;
+      while ((1 << k) - 1 < i)
+        ++k;
+    }
+    return 1 << (k - 1);
+  }
+
+  // ---------------------------------------------------------------- VSIDS heap
+
+  private void bumpActivity(int v) {
+    activity[v] += activityIncrement;
+    if (activity[v] > 1e100) {
+      for (int i = 1; i <= numVars; ++i)
+        activity[i] *= 1e-100;
+      activityIncrement *= 1e-100;
+    }
+    if (heapIndex[v] >= 0)
+      siftUp(heapIndex[v]);
+  }
+
+  private void heapInsert(int v) {
+    heap[heapSize] = v;
+    heapIndex[v] = heapSize;
+    siftUp(heapSize++);
+  }
+
+  private int heapRemoveMax() {
+    int v = heap[0];
+    heap[0] = heap[--heapSize];
+    heapIndex[heap[0]] = 0;
+    heapIndex[v] = -1;
+    if (heapSize > 0)
+      siftDown(0);
+    return v;
+  }
+
+  private void siftUp(int i) {
+    int v = heap[i];
+    while (i > 0 && activity[heap[(i - 1) / 2]] < activity[v]) {
+      heap[i] = heap[(i - 1) / 2];
+      heapIndex[heap[i]] = i;
+      i = (i - 1) / 2;
+    }
+    heap[i] = v;
+    heapIndex[v] = i;
+  }
+
+  private void siftDown(int i) {
+    int v = heap[i];
+    while (2 * i + 1 < heapSize) {
+      int child = 2 * i + 1;
+      if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]])
+        ++child;
+      if (activity[heap[child]] <= activity[v])
+        break;
+      heap[i] = heap[child];
+      heapIndex[heap[i]] = i;
+      i = child;
+    }
+    heap[i] = v;
+    heapIndex[v] = i;
+  }
+}
@@ -1,8 +1,14 @@
 package logicalreasoner.prover;
 
+import expression.Sort;
+import expression.sentence.Constant;
+import expression.sentence.Sentence;
+import logicalreasoner.truthassignment.TruthAssignment;
+import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -48,4 +54,83 @@ public class SortTests {
 
     runProver(declarations, premises, "(TellsTruth Zoey)", false);
   }
+
+  @Test
+  public void hierarchyTest() {
+    Sort animal = Sort.getSort("Animal", Sort.OBJECT);
+    Sort dog = Sort.getSort("Dog", animal);
+    Sort cat = Sort.getSort("Cat", animal);
+    Assert.assertTrue(dog.isSubSort(animal));
+    Assert.assertTrue(dog.isSubSort(Sort.OBJECT));
+    Assert.assertTrue(dog.isSubSort(dog));
+    Assert.assertFalse(dog.isSubSortExclusive(dog));
+    Assert.assertFalse(dog.isSubSort(cat));
+    Assert.assertFalse(animal.isSubSort(dog));
+    Assert.assertFalse(dog.isSubSort(Sort.BOOLEAN));
+    Assert.assertTrue(Sort.OBJECT.isSuperSort(cat));
+
+    // Sorts added after the hierarchy was encoded
+    Sort puppy = Sort.getSort("Puppy", dog);
+    Assert.assertTrue(puppy.isSubSort(animal));
+    Assert.assertFalse(cat.isSubSort(dog));
+
+    Sort.removeSort(animal);
+    Assert.assertFalse(Sort.OBJECT.getSubSorts().contains(animal));
+    Assert.assertTrue(puppy.isSubSort(animal));
+    Assert.assertFalse(puppy.isSubSort(cat));
+
+    // A removed sort declared again
+    Sort other = Sort.getSort("Dog", Sort.OBJECT);
+    Assert.assertTrue(other.isSubSort(Sort.OBJECT));
+    Assert.assertFalse(other.isSubSort(animal));
+    Assert.assertTrue(dog.isSubSort(animal));
+    Sort.removeSort(other);
+  }
+
+  /**
+   * The constants of a sort should include those of its subsorts, from the branch and its ancestors only.
+   */
+  @Test
+  public void sortedConstantsTest() {
+    Sort staff = Sort.getSort("Staff", Sort.OBJECT);
+    Sort manager = Sort.getSort("Manager", staff);
+    Sort clerk = Sort.getSort("Clerk", staff);
+    Constant a = Constant.getNewUniqueConstant(), p = Constant.getNewUniqueConstant(staff),
+            m = Constant.getNewUniqueConstant(manager), w = Constant.getNewUniqueConstant(clerk);
+
+    TruthAssignment root = new TruthAssignment();
+    root.addConstants(Arrays.asList(a, p));
+    TruthAssignment left = new TruthAssignment(new TruthAssignment(), root),
+            right = new TruthAssignment(new TruthAssignment(), root);
+    left.addConstant(m);
+    right.addConstant(w);
+
+    Assert.assertEquals(set(p, m), left.getConstants(staff));
+    Assert.assertEquals(set(m), left.getConstants(manager));
+    Assert.assertEquals(set(a, p, m), left.getConstants(Sort.OBJECT));
+    Assert.assertEquals(set(p, w), right.getConstants(staff));
+    Assert.assertEquals(set(), right.getConstants(manager));
+    Assert.assertEquals(set(p), root.getConstants(staff));
+
+    // A constant introduced above both branches after their constants were looked up
+    Constant m2 = Constant.getNewUniqueConstant(manager);
+    root.addConstant(m2);
+    Assert.assertEquals(set(m, m2), left.getConstants(manager));
+    Assert.assertEquals(set(m2), right.getConstants(manager));
+    Assert.assertEquals(set(p, w, m2), right.getConstants(staff));
+    Assert.assertEquals(set(), root.getConstants(clerk));
+
+    // A constant introduced in one branch leaves the constants of the other as they were
+    Set<Sentence> rootConstants = root.getConstants(), rightConstants = right.getConstants();
+    left.addConstant(Constant.getNewUniqueConstant(manager));
+    Assert.assertSame(rootConstants, root.getConstants());
+    Assert.assertSame(rightConstants, right.getConstants());
+    Assert.assertEquals(3, left.getConstants(manager).size());
+
+    Sort.removeSort(staff);
+  }
+
+  private static Set<Sentence> set(Sentence... s) {
+    return new HashSet<>(Arrays.asList(s));
+  }
 }
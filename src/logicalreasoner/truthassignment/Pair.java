@@ -43,7 +43,7 @@ public class Pair {
   }
 
   public int hashCode() {
-    return sentence.hashCode();
+    return 31 * sentence.hashCode() + truthAssignment.hashCode();
   }
 
   public String toString() {
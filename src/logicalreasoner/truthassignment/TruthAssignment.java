@@ -3,12 +3,17 @@ package logicalreasoner.truthassignment;
 import expression.Sort;
 import expression.sentence.BooleanSentence;
 import expression.sentence.ForAll;
+import expression.sentence.Function;
+import expression.sentence.Identity;
+import expression.sentence.Predicate;
 import expression.sentence.Sentence;
 import logicalreasoner.inference.Closure;
 
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -20,7 +25,7 @@ import java.util.stream.Stream;
  * a logical model of the world
  */
 public class TruthAssignment implements Serializable {
-  private static long truthAssignmentCount = 0;
+  private static AtomicLong truthAssignmentCount = new AtomicLong();
 
   private long UID;
   private Map<Sentence, TruthValue> map;     // The explicit Sentence -> Boolean mapping
@@ -28,20 +33,58 @@ public class TruthAssignment implements Serializable {
   private TruthAssignment parent;
   private List<TruthAssignment> children;
   private Set<TruthAssignment> leaves;
-  private Set<Sentence> constants;
+  private Set<Sentence> constants;           // The constants introduced by this, not by its scope
+  private Set<Sentence> universals;          // The universal quantifiers mapped in this
+  private Map<String, Set<Sentence>> atoms;  // The ground atoms mapped in this, by predicate name
+  private Map<String, Set<Sentence>> terms;  // The ground function terms in those atoms, by function name
+  private TruthAssignment scope;             // The TruthAssignment whose constants this inherits
+  private AtomicLong constantEpoch;          // Counts the constants introduced anywhere in this tree
+  private Queue<Pair> reopened;              // The true universals anywhere in this tree given new constants
+  private final AtomicLong constantVersion = new AtomicLong();  // Counts the constants introduced by this
+  //The TruthAssignments in the scope of which this is, which have introduced constants or mapped universal quantifiers
+  private final Set<TruthAssignment> constantsBelow = ConcurrentHashMap.newKeySet(),
+          universalsBelow = ConcurrentHashMap.newKeySet();
+  private transient volatile ConstantView constantView;
   private Map<Sentence, Boolean> suppositions;
 
+  /**
+   * The constants of a TruthAssignment, including those of its scope. A view stays valid
+   * as long as the TruthAssignment introduces no constant and the view of its scope stays
+   * the same; that is only checked once the tree has gained a constant since the last check.
+   */
+  private static class ConstantView {
+    private volatile long epoch;
+    private final long version;
+    private final ConstantView scope;
+    private final Set<Sentence> all;
+    //The constants of each sort, including those of its subsorts
+    private final Map<Sort, Set<Sentence>> sorted;
+
+    private ConstantView(long epoch, long version, ConstantView scope, Set<Sentence> all, Map<Sort, Set<Sentence>> sorted) {
+      this.epoch = epoch;
+      this.version = version;
+      this.scope = scope;
+      this.all = all;
+      this.sorted = sorted;
+    }
+  }
+
   /**
    * Create a new, empty TruthAssignment
    */
   public TruthAssignment() {
-    UID = truthAssignmentCount++;
+    UID = truthAssignmentCount.getAndIncrement();
     map = new ConcurrentHashMap<>();
     inheritedMappings = new ConcurrentHashMap<>();
     parent = null;
     children = new ArrayList<>();
     leaves = new HashSet<>();
-    constants = new HashSet<>();
+    constants = ConcurrentHashMap.newKeySet();
+    universals = ConcurrentHashMap.newKeySet();
+    atoms = new ConcurrentHashMap<>();
+    terms = new ConcurrentHashMap<>();
+    constantEpoch = new AtomicLong();
+    reopened = new ConcurrentLinkedQueue<>();
     suppositions = new HashMap<>();
   }
 
@@ -57,7 +100,12 @@ public class TruthAssignment implements Serializable {
     parent = null;
     children = new ArrayList<>();
     leaves = new HashSet<>();
-    constants = new HashSet<>();
+    constants = ConcurrentHashMap.newKeySet();
+    universals = ConcurrentHashMap.newKeySet();
+    atoms = new ConcurrentHashMap<>();
+    terms = new ConcurrentHashMap<>();
+    constantEpoch = new AtomicLong();
+    reopened = new ConcurrentLinkedQueue<>();
     suppositions = new HashMap<>();
   }
 
@@ -67,7 +115,7 @@ public class TruthAssignment implements Serializable {
   }
 
   public TruthAssignment(Map<Sentence, TruthValue> m) {
-    this(m, truthAssignmentCount++);
+    this(m, truthAssignmentCount.getAndIncrement());
   }
 
   /**
@@ -76,15 +124,22 @@ public class TruthAssignment implements Serializable {
    * @param ta the TruthAssignment to copy
    */
   public TruthAssignment(TruthAssignment ta) {
-    UID = truthAssignmentCount++;
+    UID = truthAssignmentCount.getAndIncrement();
     this.map = new HashMap<>();
     suppositions = ta.suppositions;
     inheritedMappings = new HashMap<>(ta.inheritedMappings);
+    constants = ConcurrentHashMap.newKeySet();
+    universals = ConcurrentHashMap.newKeySet();
+    atoms = new ConcurrentHashMap<>();
+    terms = new ConcurrentHashMap<>();
+    scope = ta.scope;
+    constantEpoch = ta.constantEpoch;
+    reopened = ta.reopened;
+    constants.addAll(ta.constants);
     ta.map.forEach(this::set);
     this.parent = ta.parent;
     children = new ArrayList<>(ta.children);
     leaves = new HashSet<>(ta.leaves);
-    constants = new HashSet<>(ta.constants);
   }
 
   /**
@@ -95,23 +150,52 @@ public class TruthAssignment implements Serializable {
    * @param p  the parent of the new TruthAssignment
    */
   public TruthAssignment(TruthAssignment ta, TruthAssignment p) {
-    UID = truthAssignmentCount++;
+    UID = truthAssignmentCount.getAndIncrement();
     this.map = new HashMap<>();
     this.inheritedMappings = new HashMap<>(ta.inheritedMappings);
     suppositions = ta.suppositions;
     this.parent = p;
     children = new ArrayList<>(ta.children);
     leaves = new HashSet<>(ta.leaves);
-    constants = new HashSet<>(ta.constants);
+    constants = ConcurrentHashMap.newKeySet();
+    universals = ConcurrentHashMap.newKeySet();
+    atoms = new ConcurrentHashMap<>();
+    terms = new ConcurrentHashMap<>();
+    scope = p;
+    constantEpoch = p.constantEpoch;
+    reopened = p.reopened;
+    Set<Sentence> inherited = p.getConstants();
+    ta.getConstants().stream().filter(c -> !inherited.contains(c)).forEach(constants::add);
+    if (!constants.isEmpty()) {
+      registerConstants();
+      constantEpoch.incrementAndGet();
+    }
     parent.children.add(this);
     parent.leaves.add(this);
 
-    addConstants(p.constants);
     inheritedMappings.putAll(p.inheritedMappings);
     p.map.keySet().forEach(s -> inheritedMappings.put(s, p));
     ta.map.forEach(this::set);
   }
 
+  /**
+   * Create a deep copy of this root TruthAssignment, without its children.
+   * The copy shares no mutable state with this, so that any number of snapshots
+   * can be extended concurrently as long as this is no longer modified.
+   *
+   * @return a new root TruthAssignment with the same mappings, decomposed Sentences and constants as this
+   */
+  public TruthAssignment snapshot() {
+    TruthAssignment h = new TruthAssignment();
+    map.forEach((s, v) -> {
+      h.map.put(s, v.copy());
+      h.index(s);
+    });
+    h.constants.addAll(getConstants());
+    h.suppositions.putAll(suppositions);
+    return h;
+  }
+
   public int getUID() {
     return (int) UID;
   }
@@ -283,20 +367,23 @@ public class TruthAssignment implements Serializable {
     inheritedMappings.clear();
   }
 
+  /**
+   * Add mappings to all children of this, and constants to this. Every true universal
+   * quantifier among the mappings is given all constants of this and of the
+   * TruthAssignments below it to instantiate.
+   *
+   * @param c         the Sentences, paired with the TruthAssignments containing them
+   * @param constants the constants to be added
+   */
   public void addMappingsAndConstants(Collection<Pair> c, Collection<Sentence> constants) {
     if (c.isEmpty() && constants.isEmpty())
       return;
 
-    this.constants.addAll(constants);
-    if (children.isEmpty())
-      addInstantiatedConstants(constants);
-
-
-
-    children.forEach(child -> {
-      c.forEach(p -> child.inheritedMappings.putIfAbsent(p.sentence, p.truthAssignment));
-      child.addMappingsAndConstants(c, constants);
-    });
+    addMappingsDownward(c);
+    addConstants(constants);
+    c.stream().filter(p -> p.sentence instanceof ForAll && p.truthAssignment.map.containsKey(p.sentence))
+            .filter(p -> p.truthAssignment.map.get(p.sentence).isModelled())
+            .forEach(p -> p.truthAssignment.map.get(p.sentence).addInstantiations(p.truthAssignment.getSubtreeConstants()));
   }
 
   public List<Pair> getInheritedMappings() {
@@ -308,7 +395,7 @@ public class TruthAssignment implements Serializable {
    * @return a Set of valid constants in this TruthAssignment
    */
   public Set<Sentence> getConstants() {
-    return constants;
+    return getConstantView().all;
   }
 
   /**
@@ -316,51 +403,204 @@ public class TruthAssignment implements Serializable {
    * @return a Set of valid constants in this TruthAssignment
    */
   public Set<Sentence> getConstants(Sort superSort) {
-    return constants.stream().filter(c -> c.getSort().isSubSort(superSort)).collect(Collectors.toSet());
+    return getConstantView().sorted.getOrDefault(superSort, Collections.emptySet());
+  }
+
+  /**
+   * Get the constants which a universal quantifier mapped in this must be instantiated with:
+   * those of this and its scope, and those introduced in the TruthAssignments below this
+   * @return a Set of the constants of this, its scope, and its descendants
+   */
+  private Set<Sentence> getSubtreeConstants() {
+    if (constantsBelow.isEmpty())
+      return getConstants();
+    Set<Sentence> c = new HashSet<>(getConstants());
+    constantsBelow.forEach(t -> c.addAll(t.constants));
+    return c;
   }
 
   /**
-   * Propagate newly generated constants to Universally Quantified Sentences to
-   * all parents
+   * Record that this has introduced constants in every TruthAssignment of its scope,
+   * stopping at the first which already knows, since all of its scope do as well
+   */
+  private void registerConstants() {
+    TruthAssignment t = scope;
+    while (t != null && t.constantsBelow.add(this))
+      t = t.scope;
+  }
+
+  /**
+   * Record that this has mapped a universal quantifier in every TruthAssignment of its scope
+   */
+  private void registerUniversals() {
+    TruthAssignment t = scope;
+    while (t != null && t.universalsBelow.add(this))
+      t = t.scope;
+  }
+
+  /**
+   * Get the constants of this and its scope. Once a constant has been introduced anywhere in the
+   * tree, the view is checked against the scope chain, and only rebuilt if this introduced a
+   * constant or the view of its scope was rebuilt.
+   */
+  private ConstantView getConstantView() {
+    ConstantView v = constantView;
+    long epoch = constantEpoch.get();
+    if (v != null && v.epoch == epoch)
+      return v;
+
+    long version = constantVersion.get();
+    ConstantView s = scope == null ? null : scope.getConstantView();
+    if (v != null && v.version == version && v.scope == s) {
+      v.epoch = epoch;
+      return v;
+    }
+    if (s != null && constants.isEmpty()) {
+      v = new ConstantView(epoch, version, s, s.all, s.sorted);
+    } else {
+      Set<Sentence> all = new HashSet<>(constants);
+      if (s != null)
+        all.addAll(s.all);
+      Map<Sort, Set<Sentence>> sorted = new HashMap<>();
+      for (Sentence c : all)
+        for (Sort sort = c.getSort(); sort != null; sort = sort.getSuperSort())
+          sorted.computeIfAbsent(sort, k -> new HashSet<>()).add(c);
+      sorted.replaceAll((sort, c) -> Collections.unmodifiableSet(c));
+      v = new ConstantView(epoch, version, s, Collections.unmodifiableSet(all), sorted);
+    }
+    constantView = v;
+    return v;
+  }
+
+  /**
+   * Give new constants to every true universal quantifier which this or a descendant of
+   * this inherits: those mapped in the scope of this, in this, and below this
    * @param constants the constants to be added to this
    */
   private void addInstantiatedConstants(Collection<Sentence> constants) {
-    if (!constants.isEmpty()) {
-      map.entrySet().stream().filter(e -> e.getValue().isModelled() && e.getKey() instanceof ForAll)
-              .forEach(e -> e.getValue().addInstantiations(constants));
+    if (constants.isEmpty())
+      return;
+    for (TruthAssignment t = this; t != null; t = t.scope)
+      t.instantiateUniversals(constants);
+    universalsBelow.forEach(t -> t.instantiateUniversals(constants));
+  }
 
-      inheritedMappings.entrySet().stream().filter(e -> e.getValue().models(e.getKey()) && e.getKey() instanceof ForAll)
-              .forEach(e -> e.getValue().getTruthValue(e.getKey()).addInstantiations(constants));
+  /**
+   * Index a Sentence newly mapped in this
+   */
+  private void index(Sentence s) {
+    if (s instanceof ForAll) {
+      if (universals.add(s))
+        registerUniversals();
+    } else if ((s instanceof Predicate || s instanceof Identity) && s.numArgs() > 0 && s.getFreeVariables().isEmpty()) {
+      atoms.computeIfAbsent(s.getName(), k -> ConcurrentHashMap.newKeySet()).add(s);
+      s.getArgs().stream().flatMap(Sentence::getSubSentences).filter(t -> t instanceof Function && t.numArgs() > 0)
+              .forEach(t -> terms.computeIfAbsent(t.getName(), k -> ConcurrentHashMap.newKeySet()).add(t));
     }
   }
 
+  /**
+   * Get the ground atoms mapped in this or its scope
+   *
+   * @param name the name of the predicate (or "=" for Identities)
+   * @return the atoms named name, each once
+   */
+  public Stream<Sentence> getAtoms(String name) {
+    return getScopes().flatMap(t -> t.atoms.getOrDefault(name, Collections.emptySet()).stream()).distinct();
+  }
+
+  /**
+   * @return all ground atoms mapped in this or its scope, each once
+   */
+  public Stream<Sentence> getAtoms() {
+    return getScopes().flatMap(t -> t.atoms.values().stream().flatMap(Set::stream)).distinct();
+  }
+
+  /**
+   * Get the ground function terms occurring in the atoms mapped in this or its scope.
+   * They are all of the Sort the function is declared with.
+   *
+   * @param name the name of the function
+   * @return the terms headed by name, each once
+   */
+  public Stream<Sentence> getTerms(String name) {
+    return getScopes().flatMap(t -> t.terms.getOrDefault(name, Collections.emptySet()).stream()).distinct();
+  }
+
+  /**
+   * @return this and every TruthAssignment in its scope, from this to the root
+   */
+  private Stream<TruthAssignment> getScopes() {
+    List<TruthAssignment> l = new ArrayList<>();
+    for (TruthAssignment t = this; t != null; t = t.scope)
+      l.add(t);
+    return l.stream();
+  }
+
+  /**
+   * Give constants to the true universal quantifiers mapped in this, and note those
+   * which have been given a constant they were not waiting for. This is the only change
+   * which merging into a subtree makes above it, so it is locked: subtrees which share
+   * this as an ancestor may be merged into concurrently.
+   */
+  private synchronized void instantiateUniversals(Collection<Sentence> constants) {
+    universals.forEach(s -> {
+      TruthValue v = map.get(s);
+      if (!v.isModelled())
+        return;
+      int waiting = v.getUninstantiatedConstants().size();
+      v.addInstantiations(constants);
+      if (v.getUninstantiatedConstants().size() > waiting)
+        reopened.add(Pair.makePair(s, this));
+    });
+  }
+
+  /**
+   * Remove the true universal quantifiers given new constants anywhere in the tree of this
+   * since the last call, in an order which does not depend on that in which they were given them
+   *
+   * @return each universal quantifier with the TruthAssignment it is mapped in
+   */
+  public List<Pair> pollReopenedUniversals() {
+    List<Pair> l = new ArrayList<>();
+    for (Pair p = reopened.poll(); p != null; p = reopened.poll())
+      l.add(p);
+    l.sort(Comparator.comparingInt((Pair p) -> p.truthAssignment.getUID()).thenComparing(p -> p.sentence.toString()));
+    return l;
+  }
+
   /**
    * Make sure that all parents have the relevant constants
    */
   private void refreshInstantiatedConstants() {
-    addInstantiatedConstants(getConstants());
+    Set<Sentence> constants = getConstants();
+    for (TruthAssignment t = this; t != null; t = t.scope)
+      t.instantiateUniversals(constants);
   }
 
   /**
-   * Add constant c to all children of this
+   * Add constant c to this, and so to all children of this
    * @param c the constant to be added
    */
   public void addConstant(Sentence c) {
-    constants.add(c);
-    addInstantiatedConstants(Collections.singletonList(c));
-    children.parallelStream().forEach(child -> child.addConstant(c));
+    addConstants(Collections.singletonList(c));
   }
 
   /**
-   * Add all constants in c to all children of this
+   * Add all constants in c to this, and so to all children of this. The constants are
+   * kept in this only; children find them through their scope.
    * @param c a Collection of constants to be added
    */
   public void addConstants(Collection<Sentence> c) {
-    if (c.isEmpty() || c.stream().allMatch(constants::contains))
+    Set<Sentence> known = getConstants();
+    List<Sentence> added = c.stream().filter(constant -> !known.contains(constant)).collect(Collectors.toList());
+    if (added.isEmpty())
       return;
-    constants.addAll(c);
-    addInstantiatedConstants(c);
-    children.forEach(child -> child.addConstants(c));
+    constants.addAll(added);
+    constantVersion.incrementAndGet();
+    constantEpoch.incrementAndGet();
+    registerConstants();
+    addInstantiatedConstants(added);
   }
 
   /**
@@ -447,13 +687,14 @@ public class TruthAssignment implements Serializable {
         t = new TruthValue(s);
         t.set(b, inferenceNum);
         map.put(s, t);
+        index(s);
         addMappingsAndConstants(Collections.singletonList(Pair.makePair(s, this)), s.getConstants());
       }
 
       if (s.isAtomic())
         setDecomposed(s);
       if (b && s instanceof ForAll)
-        map.get(s).addInstantiations(getConstants());
+        map.get(s).addInstantiations(getSubtreeConstants());
     }
   }
 
@@ -462,12 +703,13 @@ public class TruthAssignment implements Serializable {
             && (!v.containsFalse() || hasMapping(s, false)))
             && v.getSentence() == s) {
       map.put(s, new TruthValue(v));
+      index(s);
       addMappingsAndConstants(Collections.singletonList(Pair.makePair(s, this)), s.getConstants());
 
       if (s.isAtomic())
         setDecomposed(s);
       if (v.isModelled() && s instanceof ForAll)
-        map.get(s).addInstantiations(getConstants());
+        map.get(s).addInstantiations(getSubtreeConstants());
     }
   }
 
@@ -590,7 +832,7 @@ public class TruthAssignment implements Serializable {
    * @param h the mappings to add to this
    */
   public Stream<Pair> merge(TruthAssignment h) {
-    return merge(h.map, h.constants);
+    return merge(h.map, h.getConstants());
   }
 
   /**
@@ -604,6 +846,7 @@ public class TruthAssignment implements Serializable {
       if (truthValue == null) {
         truthValue = new TruthValue(e.getValue());
         map.put(e.getKey(), truthValue);
+        index(e.getKey());
         if (e.getKey().isAtomic())
           truthValue.setDecomposed();
         return Pair.makePair(e.getKey(), this);
@@ -613,10 +856,7 @@ public class TruthAssignment implements Serializable {
       }
     }).collect(Collectors.toList());
 
-    if (constants.containsAll(newConstants))
-      addMappingsAndConstants(l, constants);
-    else
-      addMappingsAndConstants(l, Stream.concat(getConstants().stream(), newConstants.stream()).collect(Collectors.toSet()));
+    addMappingsAndConstants(l, newConstants);
 
     return l.stream();
   }
@@ -709,6 +949,16 @@ public class TruthAssignment implements Serializable {
     tv.setDecomposed();
   }
 
+  /**
+   * Mark s as still needing to be reasoned over in this TruthAssignment
+   * @param s the Sentence which has not been decomposed
+   */
+  public void setUndecomposed(Sentence s) {
+    TruthValue tv = map.get(s);
+    if (tv != null)
+      tv.setUndecomposed();
+  }
+
   /**
    * Check whether s has been reasoned over in this TruthAssignment
    *
@@ -42,6 +42,19 @@ public class TruthValue implements Serializable {
     justifications = new HashMap<>(tv.justifications);
   }
 
+  /**
+   * Create a copy of this TruthValue which keeps its decomposition and instantiation state
+   *
+   * @return a TruthValue equal to this which can be modified independently of it
+   */
+  public TruthValue copy() {
+    TruthValue v = new TruthValue(this);
+    v.isDecomposed = isDecomposed;
+    v.instantiations.addAll(instantiations);
+    v.uninstantiatedConstants.addAll(uninstantiatedConstants);
+    return v;
+  }
+
   public Sentence getSentence() {
     return sentence;
   }
@@ -97,6 +110,10 @@ public class TruthValue implements Serializable {
     isDecomposed = true;
   }
 
+  public void setUndecomposed() {
+    isDecomposed = false;
+  }
+
   public boolean isDecomposed() {
 
     return isDecomposed;